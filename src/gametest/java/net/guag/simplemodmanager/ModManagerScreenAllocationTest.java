@@ -0,0 +1,35 @@
+package net.guag.simplemodmanager;
+
+import net.fabricmc.fabric.api.client.gametest.v1.FabricClientGameTest;
+import net.fabricmc.fabric.api.client.gametest.v1.context.ClientGameTestContext;
+import net.minecraft.client.MinecraftClient;
+
+/**
+ * Opens the manager screen on the title screen and fails if any of its frames
+ * allocate once it has settled. Only the screen's own per-frame work is
+ * measured, see {@link AllocationProbe}.
+ */
+public class ModManagerScreenAllocationTest implements FabricClientGameTest {
+    // Long enough for the background loads, icon uploads and JIT to finish
+    private static final int WARMUP_TICKS = 200;
+    private static final int MEASURED_TICKS = 100;
+
+    @Override
+    public void runTest(ClientGameTestContext context) {
+        context.setScreen(() -> new ModManagerScreen(MinecraftClient.getInstance(), InventoryWatcher.current()));
+        context.waitTicks(WARMUP_TICKS);
+
+        context.runOnClient(client -> AllocationProbe.startRecording());
+        context.waitTicks(MEASURED_TICKS);
+
+        int measured = context.computeOnClient(client -> AllocationProbe.measuredFrames());
+        int allocating = context.computeOnClient(client -> AllocationProbe.allocatingFrames());
+        long bytes = context.computeOnClient(client -> AllocationProbe.allocatedBytes());
+        context.setScreen(() -> null);
+
+        if (measured == 0) throw new AssertionError("No frames of the manager screen were measured");
+        if (allocating > 0) {
+            throw new AssertionError(allocating + " of " + measured + " steady-state frames allocated, " + bytes + " bytes in total");
+        }
+    }
+}
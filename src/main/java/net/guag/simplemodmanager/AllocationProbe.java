@@ -0,0 +1,82 @@
+package net.guag.simplemodmanager;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that the manager screen's own per-frame work allocates nothing. The
+ * screen brackets its own bookkeeping with {@link #begin()} and {@link #end},
+ * leaving out the vanilla widget and text drawing in between, which records its
+ * own draw state objects. Every frame after warm-up that allocates is counted.
+ *
+ * Start the game with -Dsimplemodmanager.allocationProbe=true to have such
+ * frames printed; the client game test records them with
+ * {@link #startRecording()} and fails if there are any.
+ */
+public class AllocationProbe {
+    private static final boolean REPORT = Boolean.getBoolean("simplemodmanager.allocationProbe");
+    // Frames to skip while caches, icons and JIT settle
+    private static final int WARMUP_FRAMES = 120;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    // Only touched on the render thread
+    private static boolean enabled = REPORT;
+    private static int frames = 0;
+    private static long frameBytes = 0;
+    private static int measuredFrames = 0;
+    private static int allocatingFrames = 0;
+    private static long allocatedBytes = 0;
+
+    public static long begin() {
+        return enabled ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    public static void end(long allocatedBefore) {
+        if (!enabled) return;
+        frameBytes += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+    }
+
+    // Called once per frame after the last end().
+    public static void endFrame() {
+        if (!enabled) return;
+        long allocated = frameBytes;
+        frameBytes = 0;
+        if (++frames <= WARMUP_FRAMES) return;
+
+        measuredFrames++;
+        if (allocated == 0) return;
+        allocatingFrames++;
+        allocatedBytes += allocated;
+        if (REPORT) System.err.println("ModManagerScreen allocated " + allocated + " bytes in frame " + frames);
+    }
+
+    // Called when the screen is rebuilt, since the first frames after that legitimately allocate.
+    public static void reset() {
+        frames = 0;
+        frameBytes = 0;
+    }
+
+    // Test hooks for the client game test, which shares this package.
+
+    // Counts from now on, without another warm-up; call on the render thread once the screen has settled.
+    static void startRecording() {
+        enabled = true;
+        frames = WARMUP_FRAMES;
+        frameBytes = 0;
+        measuredFrames = 0;
+        allocatingFrames = 0;
+        allocatedBytes = 0;
+    }
+
+    static int measuredFrames() {
+        return measuredFrames;
+    }
+
+    static int allocatingFrames() {
+        return allocatingFrames;
+    }
+
+    static long allocatedBytes() {
+        return allocatedBytes;
+    }
+}
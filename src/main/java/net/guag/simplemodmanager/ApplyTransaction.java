@@ -0,0 +1,338 @@
+package net.guag.simplemodmanager;
+
+import com.google.gson.Gson;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies a batch of toggle changes as one unit. The whole list of moves is
+ * planned and checked first, then written to a journal in the config folder
+ * before any file is touched. If a move fails, the ones already done are
+ * reverted; if the game dies halfway, {@link #recover()} finishes the journal
+ * on the next launch, or reverts it if it can't.
+ *
+ * Progress isn't journaled per move: a move is done exactly when its source is
+ * gone and its target exists, so the files themselves say how far a batch got.
+ *
+ * Moves run on the background executor, a few at a time, since packs moved to
+ * another drive are copied by {@link FileMover}. Each move reports its bytes
+ * for the screen's progress overlay, and cancelling reverts the whole batch.
+ */
+public class ApplyTransaction {
+    private static final File JOURNAL_FILE = new File(MinecraftClient.getInstance().runDirectory, "config/simplemodmanager_journal.json");
+    // Files that were in the way of a move wait here until the batch has succeeded
+    private static final File BACKUP_FOLDER = new File(MinecraftClient.getInstance().runDirectory, "config/simplemodmanager_backup");
+
+    // One file move, as absolute paths; backup is set when a file already sits at the target
+    public record Move(String from, String to, String backup) {}
+
+    private record Journal(List<Move> moves) {}
+
+    // Progress of one move as shown by the overlay; bytes only grow for copies across drives
+    public static final class Progress {
+        public enum State { WAITING, MOVING, DONE, FAILED }
+
+        public final String name;
+        public final AtomicLong bytes = new AtomicLong();
+        public volatile long totalBytes = 0;
+        public volatile State state = State.WAITING;
+
+        Progress(String name) {
+            this.name = name;
+        }
+    }
+
+    // Moves running at once; renames are instant, this only bounds concurrent copies
+    private static final int PARALLELISM = 4;
+
+    private final List<Move> moves;
+    // The toggle and progress behind each move
+    private final List<ModToggle> toggles;
+    private final List<Progress> progress = new ArrayList<>();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private ApplyTransaction(List<Move> moves, List<ModToggle> toggles) {
+        this.moves = moves;
+        this.toggles = toggles;
+        for (Move move : moves) progress.add(new Progress(new File(move.from()).getName()));
+    }
+
+    // Plans the moves for every toggle whose state differs from the disk, for each category given. Moves run
+    // concurrently, so no two of them may touch the same path: a batch that would swap two files of the same
+    // name between the enabled and disabled folder is refused.
+    public static ApplyTransaction plan(Map<InventoryScanner.Category, List<ModToggle>> togglesByCategory) throws IOException {
+        List<Move> moves = new ArrayList<>();
+        List<ModToggle> changed = new ArrayList<>();
+        Set<String> sources = new HashSet<>();
+        long stamp = System.currentTimeMillis();
+
+        for (Map.Entry<InventoryScanner.Category, List<ModToggle>> entry : togglesByCategory.entrySet()) {
+            InventoryScanner.Category category = entry.getKey();
+            for (ModToggle toggle : entry.getValue()) {
+                if (!toggle.hasPendingChange()) continue;
+
+                File source = toggle.getFile().getAbsoluteFile();
+                if (!source.exists()) {
+                    throw new IOException(source.getName() + " is no longer in " + source.getParentFile().getName());
+                }
+                File target = new File(toggle.isEnabled() ? category.activeFolder : category.disabledFolder, source.getName()).getAbsoluteFile();
+                // The move's index keeps backups of files with the same name apart
+                String backup = target.exists()
+                        ? new File(BACKUP_FOLDER, stamp + "-" + moves.size() + "-" + target.getName()).getAbsolutePath()
+                        : null;
+
+                moves.add(new Move(source.getPath(), target.getPath(), backup));
+                sources.add(source.getPath());
+                changed.add(toggle);
+            }
+        }
+
+        // With one enabled and one disabled folder per category, a target that is also a source means two
+        // copies of one name trade places, which can't be done one file at a time without losing one of them
+        for (Move move : moves) {
+            if (sources.contains(move.to())) {
+                File target = new File(move.to());
+                throw new IOException(target.getName() + " is both enabled and disabled in this change; toggle only one copy");
+            }
+        }
+        return new ApplyTransaction(moves, changed);
+    }
+
+    public boolean isEmpty() {
+        return moves.isEmpty();
+    }
+
+    // Moves whose target already holds a file, which gets replaced.
+    public List<Move> replacements() {
+        List<Move> result = new ArrayList<>();
+        for (Move move : moves) {
+            if (move.backup() != null) result.add(move);
+        }
+        return result;
+    }
+
+    public List<Progress> getProgress() {
+        return progress;
+    }
+
+    // Stops starting new moves and interrupts running copies; the batch then reverts.
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    // Commits on the background executor. The toggles are only updated on the render thread, see finish().
+    public CompletableFuture<Void> commitAsync() {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                commit();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, BackgroundTasks.EXECUTOR);
+    }
+
+    // Points the toggles at their new files; call on the render thread after a successful commit.
+    public void finish() {
+        for (int i = 0; i < moves.size(); i++) {
+            toggles.get(i).markApplied(new File(moves.get(i).to()));
+        }
+    }
+
+    // Runs every move or none of them; on failure the folders are left as they were and the error is rethrown.
+    public void commit() throws IOException {
+        if (moves.isEmpty()) return;
+        writeJournal(moves);
+
+        Semaphore slots = new Semaphore(PARALLELISM);
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        for (int i = 0; i < moves.size(); i++) {
+            Move move = moves.get(i);
+            Progress status = progress.get(i);
+            running.add(CompletableFuture.runAsync(() -> {
+                slots.acquireUninterruptibly();
+                try {
+                    if (cancelled.get()) throw new IOException("Cancelled");
+                    status.state = Progress.State.MOVING;
+                    status.totalBytes = FileMover.sizeOf(new File(move.from()));
+                    forward(move, status.bytes, cancelled);
+                    status.state = Progress.State.DONE;
+                } catch (IOException e) {
+                    status.state = Progress.State.FAILED;
+                    // One failure dooms the batch, so don't start anything else
+                    cancelled.set(true);
+                    throw new CompletionException(e);
+                } finally {
+                    slots.release();
+                }
+            }, BackgroundTasks.EXECUTOR));
+        }
+
+        try {
+            CompletableFuture.allOf(running.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException failure) {
+            IOException e = firstError(running);
+            try {
+                // Reverting is decided per file, so moves that never started are simply left alone
+                revert(moves);
+                deleteJournal();
+            } catch (IOException rollbackError) {
+                // Keep the journal so the next launch can finish the rollback
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        }
+
+        deleteJournal();
+        deleteBackups(moves);
+    }
+
+    // The real failure rather than the "Cancelled" of the moves it stopped.
+    private static IOException firstError(List<CompletableFuture<Void>> running) {
+        IOException cancelledError = null;
+        for (CompletableFuture<Void> future : running) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                IOException cause = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                if (!"Cancelled".equals(cause.getMessage())) return cause;
+                cancelledError = cause;
+            }
+        }
+        return cancelledError != null ? cancelledError : new IOException("Apply failed");
+    }
+
+    // Finishes a batch left behind by a crash, or reverts it if it can't be finished. Call before scanning the folders.
+    public static void recover() {
+        if (!JOURNAL_FILE.exists()) return;
+
+        List<Move> moves;
+        try (BufferedReader reader = new BufferedReader(new FileReader(JOURNAL_FILE))) {
+            Journal journal = new Gson().fromJson(reader, Journal.class);
+            moves = journal == null || journal.moves() == null ? List.of() : journal.moves();
+        } catch (Exception e) {
+            // Written before any move, so an unreadable journal means nothing was moved yet
+            e.printStackTrace();
+            JOURNAL_FILE.delete();
+            return;
+        }
+
+        try {
+            for (Move move : moves) forward(move, new AtomicLong(), new AtomicBoolean());
+            deleteBackups(moves);
+            System.out.println("Simple Mod Manager finished applying " + moves.size() + " interrupted changes");
+        } catch (IOException e) {
+            System.err.println("Could not finish interrupted changes, reverting them: " + e.getMessage());
+            try {
+                revert(moves);
+            } catch (IOException revertError) {
+                revertError.printStackTrace();
+                return; // leave the journal for the next attempt
+            }
+        }
+        try {
+            deleteJournal();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Does the move unless it is already done, so it can be replayed.
+    private static void forward(Move move, AtomicLong bytes, AtomicBoolean cancelled) throws IOException {
+        File from = new File(move.from());
+        File to = new File(move.to());
+        if (!from.exists()) {
+            if (to.exists()) return; // already done
+            throw new IOException(from.getName() + " is missing");
+        }
+        if (to.exists()) {
+            // With whatever was there before already parked (or nothing there at planning time), the file at the
+            // target is a finished copy from an interrupted run that didn't get to delete its source
+            boolean copied = move.backup() == null || new File(move.backup()).exists();
+            if (copied && FileMover.sizeOf(to) == FileMover.sizeOf(from)) {
+                FileMover.deleteTree(from);
+                return;
+            }
+            if (move.backup() == null) throw new IOException(to.getName() + " appeared in " + to.getParentFile().getName());
+            moveFile(to, new File(move.backup()));
+        }
+        FileMover.move(from, to, bytes, cancelled);
+    }
+
+    // Undoes the moves in reverse order, including half-done ones.
+    private static void revert(List<Move> moves) throws IOException {
+        for (int i = moves.size() - 1; i >= 0; i--) {
+            Move move = moves.get(i);
+            File from = new File(move.from());
+            File to = new File(move.to());
+            FileMover.deleteTree(FileMover.partialFor(to));
+            if (to.exists() && !from.exists()) moveFile(to, from);
+
+            if (move.backup() != null) {
+                File backup = new File(move.backup());
+                if (backup.exists() && !to.exists()) moveFile(backup, to);
+            }
+        }
+    }
+
+    private static void moveFile(File from, File to) throws IOException {
+        FileMover.move(from, to, new AtomicLong(), new AtomicBoolean());
+    }
+
+    // The journal has to be on disk before the first move, so it is synced and swapped in whole.
+    private static void writeJournal(List<Move> moves) throws IOException {
+        JOURNAL_FILE.getParentFile().mkdirs(); // Make sure config dir exists
+        File temp = new File(JOURNAL_FILE.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            new Gson().toJson(new Journal(moves), writer);
+            writer.flush();
+            out.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), JOURNAL_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), JOURNAL_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteJournal() throws IOException {
+        Files.deleteIfExists(JOURNAL_FILE.toPath());
+    }
+
+    // Replaced files are only dropped once the batch that replaced them is done.
+    private static void deleteBackups(List<Move> moves) {
+        for (Move move : moves) {
+            if (move.backup() == null) continue;
+            try {
+                FileMover.deleteTree(new File(move.backup()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
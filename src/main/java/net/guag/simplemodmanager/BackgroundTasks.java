@@ -0,0 +1,12 @@
+package net.guag.simplemodmanager;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shared executor for work that must stay off the render thread. The work is
+ * almost entirely blocking file I/O, so each task gets its own virtual thread.
+ */
+public class BackgroundTasks {
+    public static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+}
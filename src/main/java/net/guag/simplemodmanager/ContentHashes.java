@@ -0,0 +1,186 @@
+package net.guag.simplemodmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * SHA-256 of every mod jar and pack, so copies of the same file can be told
+ * apart from different files with the same name. Files are streamed through
+ * a buffer one at a time per thread, several files in parallel, and not
+ * mapped, for the reason given in {@link ZipIndex}. Hashes are
+ * kept in config/simplemodmanager_hashes.json under the file's full path, size
+ * and mtime, so only new or changed files are read again, and two files that
+ * only share a name are always both read.
+ *
+ * A folder pack's hash covers the relative path and content of each file in it.
+ */
+public class ContentHashes {
+    private static final File CACHE_FILE = new File(MinecraftClient.getInstance().runDirectory, "config/simplemodmanager_hashes.json");
+    private static final int BUFFER_BYTES = 1024 * 1024;
+    // Hashing is bound by the disk and the CPU, not by waiting, so don't run more files at once than cores
+    private static final int PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    // Path:size:mtime -> hex SHA-256
+    private static final Map<String, String> cache = new ConcurrentHashMap<>();
+    private static boolean loaded = false;
+    private static volatile boolean dirty = false;
+
+    // Hashes every toggle's file in parallel, reading only the ones not cached yet. Files that can't be read are left out.
+    public static Map<ModToggle, String> hashAll(Collection<ModToggle> toggles) {
+        load();
+        Semaphore slots = new Semaphore(PARALLELISM);
+        Map<ModToggle, CompletableFuture<String>> running = new HashMap<>();
+        for (ModToggle toggle : toggles) {
+            running.put(toggle, CompletableFuture.supplyAsync(() -> {
+                slots.acquireUninterruptibly();
+                try {
+                    return get(toggle);
+                } finally {
+                    slots.release();
+                }
+            }, BackgroundTasks.EXECUTOR));
+        }
+
+        Map<ModToggle, String> result = new HashMap<>();
+        for (Map.Entry<ModToggle, CompletableFuture<String>> entry : running.entrySet()) {
+            String hash = entry.getValue().join();
+            if (hash != null) result.put(entry.getKey(), hash);
+        }
+        return result;
+    }
+
+    // The toggle's hash, reading the file if it isn't cached; null if it can't be read.
+    public static String get(ModToggle toggle) {
+        load();
+        String key = keyOf(toggle.getFile(), toggle.getSize(), toggle.getLastModified());
+        String hash = cache.get(key);
+        if (hash != null) return hash;
+
+        try {
+            hash = hash(toggle.getFile());
+        } catch (IOException e) {
+            System.err.println("Could not hash " + toggle.getFile().getName() + ": " + e.getMessage());
+            return null;
+        }
+        cache.put(key, hash);
+        dirty = true;
+        return hash;
+    }
+
+    // The cached hash of a file as it is on disk now, without reading it; null if it hasn't been hashed.
+    public static String cached(File file) {
+        load();
+        if (!file.exists()) return null;
+        return cache.get(keyOf(file, file.isDirectory() ? folderSize(file) : file.length(), file.lastModified()));
+    }
+
+    private static String keyOf(File file, long size, long lastModified) {
+        return file.getAbsolutePath() + ":" + size + ":" + lastModified;
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+
+        if (!file.isDirectory()) {
+            update(digest, file.toPath(), buffer);
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        Path root = file.toPath();
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path path : files) {
+            digest.update(root.relativize(path).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            update(digest, path, buffer);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, Path path, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer.clear()) >= 0) {
+                digest.update(buffer.flip());
+            }
+        }
+    }
+
+    // What the inventory scan reports as a folder's size, so cached() builds the same key as the toggle.
+    private static long folderSize(File folder) {
+        try {
+            return Files.readAttributes(folder.toPath(), BasicFileAttributes.class).size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // Drops hashes of files that are gone or have changed.
+    public static synchronized void retainOnly(Collection<ModToggle> toggles) {
+        load();
+        Set<String> keys = new HashSet<>();
+        for (ModToggle toggle : toggles) keys.add(keyOf(toggle.getFile(), toggle.getSize(), toggle.getLastModified()));
+        if (cache.keySet().retainAll(keys)) dirty = true;
+    }
+
+    public static synchronized void save() {
+        if (!dirty) return;
+        try {
+            CACHE_FILE.getParentFile().mkdirs(); // Make sure config dir exists
+            try (FileWriter writer = new FileWriter(CACHE_FILE)) {
+                new Gson().toJson(new HashMap<>(cache), writer);
+            }
+            dirty = false;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!CACHE_FILE.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(CACHE_FILE))) {
+            Map<String, String> stored = new Gson().fromJson(reader, new TypeToken<Map<String, String>>() {}.getType());
+            if (stored != null) cache.putAll(stored);
+        } catch (Exception e) {
+            // A broken cache only means hashing everything again
+            e.printStackTrace();
+        }
+    }
+}
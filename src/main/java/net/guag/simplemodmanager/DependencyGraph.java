@@ -0,0 +1,323 @@
+package net.guag.simplemodmanager;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Who provides, needs, recommends and breaks which mod id, built from each
+ * jar's fabric.mod.json. The graph keeps a count of enabled providers per id,
+ * so toggling a mod only re-checks the mods that mention one of its ids rather
+ * than resolving everything again. Version ranges are not evaluated; an id
+ * counts as present if any enabled jar provides it, itself or through a jar
+ * bundled inside it.
+ */
+public class DependencyGraph {
+    // Ids the game itself provides, never found in the mods folder
+    private static final Set<String> BUILT_IN = Set.of("minecraft", "java", "fabricloader");
+
+    public record Problem(String message, boolean conflict) {}
+
+    private static final class Node {
+        final String path;
+        String key;
+        ModDescriptor descriptor;
+        boolean enabled;
+        // The jar's own id and provides, and those plus everything bundled inside it
+        Set<String> topLevelIds;
+        Set<String> allIds;
+
+        Node(String path, ModDescriptor descriptor) {
+            this.path = path;
+            this.descriptor = descriptor;
+            topLevelIds = new HashSet<>(descriptor.provides());
+            if (descriptor.id() != null) topLevelIds.add(descriptor.id());
+            allIds = new HashSet<>(topLevelIds);
+            for (ModDescriptor.BundledMod bundled : descriptor.bundled()) {
+                if (bundled.id() != null) allIds.add(bundled.id());
+                allIds.addAll(bundled.provides());
+            }
+        }
+
+        Set<String> ids() {
+            return allIds;
+        }
+
+        String label() {
+            return descriptor.name() != null ? descriptor.name() : new File(path).getName();
+        }
+    }
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    // Id -> paths of the jars that provide, depend on (or recommend) and break it
+    private final Map<String, Set<String>> providers = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    private final Map<String, Set<String>> breakers = new HashMap<>();
+    private final Map<String, Integer> enabledProviders = new HashMap<>();
+    // Cached problems per jar; entries are dropped when something they depend on changes
+    private final Map<String, List<Problem>> problems = new HashMap<>();
+
+    // Brings the graph in line with the toggles, touching only files that were added, replaced, removed or toggled.
+    public void sync(List<ModToggle> toggles) {
+        Set<String> present = new HashSet<>();
+        for (ModToggle toggle : toggles) {
+            String path = keyOf(toggle);
+            present.add(path);
+            Node node = nodes.get(path);
+            if (node == null || !node.key.equals(toggle.getIconKey())) {
+                if (node != null) remove(node);
+                add(path, toggle.getIconKey(), ModMetadataIndex.get(toggle), toggle.isEnabled());
+            } else if (node.enabled != toggle.isEnabled()) {
+                setEnabled(node, toggle.isEnabled());
+            }
+        }
+        for (String path : new ArrayList<>(nodes.keySet())) {
+            if (!present.contains(path)) remove(nodes.get(path));
+        }
+    }
+
+    // Call after a single toggle changed; cheaper than sync.
+    public void update(ModToggle toggle) {
+        Node node = nodes.get(keyOf(toggle));
+        if (node != null && node.enabled != toggle.isEnabled()) setEnabled(node, toggle.isEnabled());
+    }
+
+    // Mod name for a jar in the graph, or its file name.
+    public String labelOf(String path) {
+        Node node = nodes.get(path);
+        return node == null ? new File(path).getName() : node.label();
+    }
+
+    // Nodes are keyed by the jar's full path, so copies with the same name in mods/ and disabled-mods/ stay apart.
+    public static String keyOf(ModToggle toggle) {
+        return toggle.getFile().getAbsolutePath();
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    public List<Problem> problemsOf(ModToggle toggle) {
+        Node node = nodes.get(keyOf(toggle));
+        if (node == null) return List.of();
+        return problems.computeIfAbsent(node.path, f -> check(node));
+    }
+
+    public boolean hasConflict(ModToggle toggle) {
+        for (Problem problem : problemsOf(toggle)) {
+            if (problem.conflict()) return true;
+        }
+        return false;
+    }
+
+    // Enabled mods with at least one conflict; only the cached or changed ones are re-checked.
+    public int conflictCount() {
+        int count = 0;
+        for (Node node : nodes.values()) {
+            if (!node.enabled) continue;
+            for (Problem problem : problems.computeIfAbsent(node.path, f -> check(node))) {
+                if (problem.conflict()) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Enabled mods that would be left without a required dependency once this one is disabled, transitively.
+    public List<String> dependentsToDisable(ModToggle toggle) {
+        Node start = nodes.get(keyOf(toggle));
+        if (start == null) return List.of();
+
+        Set<String> disabled = new HashSet<>();
+        disabled.add(start.path);
+        List<String> result = new ArrayList<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (String id : node.ids()) {
+                if (isSatisfied(id, disabled)) continue;
+                for (String path : dependents.getOrDefault(id, Set.of())) {
+                    Node dependent = nodes.get(path);
+                    if (!dependent.enabled || disabled.contains(path) || !dependent.descriptor.depends().containsKey(id)) continue;
+                    disabled.add(path);
+                    result.add(path);
+                    queue.add(dependent);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Disabled mods that would have to be enabled for this one to load, transitively.
+    public List<String> dependenciesToEnable(ModToggle toggle) {
+        Node start = nodes.get(keyOf(toggle));
+        if (start == null) return List.of();
+
+        Set<String> enabled = new HashSet<>();
+        enabled.add(start.path);
+        List<String> result = new ArrayList<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (String id : node.descriptor.depends().keySet()) {
+                if (isPresent(id, enabled)) continue;
+                // Any disabled provider will do; take the first by path so the choice is stable
+                String choice = null;
+                for (String path : providers.getOrDefault(id, Set.of())) {
+                    if (choice == null || path.compareTo(choice) < 0) choice = path;
+                }
+                if (choice == null) continue; // not installed at all; shown as a problem instead
+                enabled.add(choice);
+                result.add(choice);
+                queue.add(nodes.get(choice));
+            }
+        }
+        return result;
+    }
+
+    private List<Problem> check(Node node) {
+        if (!node.enabled) return List.of();
+        List<Problem> result = new ArrayList<>();
+        ModDescriptor descriptor = node.descriptor;
+        for (String id : descriptor.depends().keySet()) {
+            if (!isSatisfied(id, Set.of())) result.add(new Problem("Needs " + describeMissing(id), true));
+        }
+        for (String id : descriptor.breaks().keySet()) {
+            if (enabledProviders.getOrDefault(id, 0) > 0) result.add(new Problem("Incompatible with " + nameOf(id), true));
+        }
+        for (String id : node.ids()) {
+            for (String path : breakers.getOrDefault(id, Set.of())) {
+                Node breaker = nodes.get(path);
+                if (breaker.enabled && breaker != node) result.add(new Problem("Incompatible with " + breaker.label(), true));
+            }
+        }
+        for (String id : descriptor.recommends().keySet()) {
+            if (!isSatisfied(id, Set.of())) result.add(new Problem("Recommends " + describeMissing(id), false));
+        }
+
+        // Two enabled jars that are the same mod stop the game from loading
+        for (String id : node.topLevelIds) {
+            Node other = otherEnabledProvider(node, id, true);
+            if (other != null) result.add(new Problem("Same mod as " + other.label(), true));
+        }
+        // Bundled copies are deduplicated by the loader, but are worth knowing about
+        for (ModDescriptor.BundledMod bundled : descriptor.bundled()) {
+            if (bundled.id() == null) continue;
+            Node other = otherEnabledProvider(node, bundled.id(), false);
+            if (other != null) {
+                result.add(new Problem("Bundles " + bundled.id() + " " + bundled.version() + ", also in " + other.label(), false));
+            }
+        }
+        return result;
+    }
+
+    // Another enabled jar providing the id, at the top level only or also through bundled jars.
+    private Node otherEnabledProvider(Node node, String id, boolean topLevelOnly) {
+        for (String path : providers.getOrDefault(id, Set.of())) {
+            Node other = nodes.get(path);
+            if (other == node || !other.enabled) continue;
+            if (!topLevelOnly || other.topLevelIds.contains(id)) return other;
+        }
+        return null;
+    }
+
+    // True if an enabled jar not listed in without provides the id, or the game does.
+    private boolean isSatisfied(String id, Set<String> without) {
+        int count = enabledProviders.getOrDefault(id, 0);
+        for (String path : without) {
+            Node node = nodes.get(path);
+            if (node != null && node.enabled && node.ids().contains(id)) count--;
+        }
+        return count > 0 || providedByEnvironment(id);
+    }
+
+    // True if an enabled jar, one of the extra files, or the game provides the id.
+    private boolean isPresent(String id, Set<String> extra) {
+        if (enabledProviders.getOrDefault(id, 0) > 0 || providedByEnvironment(id)) return true;
+        for (String path : extra) {
+            if (nodes.get(path).ids().contains(id)) return true;
+        }
+        return false;
+    }
+
+    // Built-in ids, and mods loaded from somewhere other than the managed jars (e.g. bundled inside another jar).
+    private boolean providedByEnvironment(String id) {
+        if (BUILT_IN.contains(id)) return true;
+        return !providers.containsKey(id) && FabricLoader.getInstance().getModContainer(id).isPresent();
+    }
+
+    private String nameOf(String id) {
+        Set<String> files = providers.get(id);
+        return files == null || files.isEmpty() ? id : nodes.get(files.iterator().next()).label();
+    }
+
+    private String describeMissing(String id) {
+        return providers.containsKey(id) ? nameOf(id) + " (disabled)" : id + " (not installed)";
+    }
+
+    private void add(String path, String key, ModDescriptor descriptor, boolean enabled) {
+        Node node = new Node(path, descriptor);
+        node.key = key;
+        node.enabled = enabled;
+        nodes.put(path, node);
+        for (String id : node.ids()) providers.computeIfAbsent(id, i -> new HashSet<>()).add(path);
+        for (String id : descriptor.depends().keySet()) dependents.computeIfAbsent(id, i -> new HashSet<>()).add(path);
+        for (String id : descriptor.recommends().keySet()) dependents.computeIfAbsent(id, i -> new HashSet<>()).add(path);
+        for (String id : descriptor.breaks().keySet()) breakers.computeIfAbsent(id, i -> new HashSet<>()).add(path);
+        if (enabled) countProviders(node, 1);
+        invalidate(node);
+    }
+
+    private void remove(Node node) {
+        if (node.enabled) countProviders(node, -1);
+        invalidate(node);
+        nodes.remove(node.path);
+        problems.remove(node.path);
+        for (String id : node.ids()) removeFrom(providers, id, node.path);
+        for (String id : node.descriptor.depends().keySet()) removeFrom(dependents, id, node.path);
+        for (String id : node.descriptor.recommends().keySet()) removeFrom(dependents, id, node.path);
+        for (String id : node.descriptor.breaks().keySet()) removeFrom(breakers, id, node.path);
+    }
+
+    private void setEnabled(Node node, boolean enabled) {
+        node.enabled = enabled;
+        countProviders(node, enabled ? 1 : -1);
+        invalidate(node);
+    }
+
+    private void countProviders(Node node, int delta) {
+        for (String id : node.ids()) enabledProviders.merge(id, delta, Integer::sum);
+    }
+
+    // Drops the cached problems of the node and of every node whose check reads one of its ids.
+    private void invalidate(Node node) {
+        problems.remove(node.path);
+        for (String id : node.ids()) {
+            for (String path : dependents.getOrDefault(id, Set.of())) problems.remove(path);
+            for (String path : breakers.getOrDefault(id, Set.of())) problems.remove(path);
+            for (String path : providers.getOrDefault(id, Set.of())) problems.remove(path);
+        }
+        for (String id : node.descriptor.breaks().keySet()) {
+            for (String path : providers.getOrDefault(id, Set.of())) problems.remove(path);
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<String>> index, String id, String path) {
+        Set<String> files = index.get(id);
+        if (files == null) return;
+        files.remove(path);
+        if (files.isEmpty()) index.remove(id);
+    }
+}
@@ -0,0 +1,69 @@
+package net.guag.simplemodmanager;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Finds files that are copies of each other, usually the same mod left in
+ * both mods/ and disabled-mods/. Two files are the same when their content
+ * hashes match, and two mod jars are versions of the same mod when they have
+ * the same id. Only files of the same category are compared.
+ */
+public class DuplicateFinder {
+
+    // For each toggle with duplicates, one line per other copy.
+    public static Map<ModToggle, List<String>> find(Map<InventoryScanner.Category, List<ModToggle>> togglesByCategory,
+                                                    Map<ModToggle, String> hashes) {
+        Map<ModToggle, List<String>> result = new HashMap<>();
+        for (Map.Entry<InventoryScanner.Category, List<ModToggle>> entry : togglesByCategory.entrySet()) {
+            Map<String, List<ModToggle>> byHash = new HashMap<>();
+            Map<String, List<ModToggle>> byId = new HashMap<>();
+            for (ModToggle toggle : entry.getValue()) {
+                String hash = hashes.get(toggle);
+                if (hash != null) byHash.computeIfAbsent(hash, h -> new ArrayList<>()).add(toggle);
+                if (entry.getKey() == InventoryScanner.Category.MODS) {
+                    ModDescriptor descriptor = ModMetadataIndex.get(toggle);
+                    if (descriptor.id() != null) byId.computeIfAbsent(descriptor.id(), id -> new ArrayList<>()).add(toggle);
+                }
+            }
+
+            for (List<ModToggle> copies : byHash.values()) {
+                for (ModToggle toggle : copies) {
+                    for (ModToggle other : copies) {
+                        if (other != toggle) add(result, toggle, "Identical copy in " + locationOf(other));
+                    }
+                }
+            }
+            for (Map.Entry<String, List<ModToggle>> versions : byId.entrySet()) {
+                for (ModToggle toggle : versions.getValue()) {
+                    for (ModToggle other : versions.getValue()) {
+                        // Identical files were reported above
+                        if (other == toggle || Objects.equals(hashes.get(toggle), hashes.get(other)) && hashes.get(toggle) != null) continue;
+                        String version = ModMetadataIndex.get(other).version();
+                        add(result, toggle, "Another " + versions.getKey() + (version != null ? " (v" + version + ")" : "")
+                                + " in " + locationOf(other));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // Folder and file name, e.g. "disabled-mods/sodium.jar"
+    public static String locationOf(ModToggle toggle) {
+        return locationOf(toggle.getFile());
+    }
+
+    public static String locationOf(File file) {
+        File parent = file.getParentFile();
+        return parent == null ? file.getName() : parent.getName() + "/" + file.getName();
+    }
+
+    private static void add(Map<ModToggle, List<String>> result, ModToggle toggle, String line) {
+        result.computeIfAbsent(toggle, t -> new ArrayList<>()).add(line);
+    }
+}
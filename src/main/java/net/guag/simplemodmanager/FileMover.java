@@ -0,0 +1,121 @@
+package net.guag.simplemodmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Moves one file or folder pack. Within a filesystem that is a single rename;
+ * across filesystems the bytes are copied with {@link FileChannel#transferTo},
+ * which lets the kernel move them without passing through the Java heap, into a
+ * ".partial" name that is only renamed into place once complete. The source is
+ * deleted last, so an interrupted copy never looks like a finished move.
+ */
+public class FileMover {
+    // Copy in slices so progress updates and cancelling stay responsive on big packs
+    private static final long SLICE_BYTES = 8L * 1024 * 1024;
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    // Moves from to to, adding copied bytes to progress. Fails if something is already at to: an atomic rename
+    // would silently replace it, so the target is checked first.
+    public static void move(File from, File to, AtomicLong progress, AtomicBoolean cancelled) throws IOException {
+        Files.createDirectories(to.getParentFile().toPath());
+        requireAbsent(to);
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            progress.addAndGet(sizeOf(from.exists() ? from : to));
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            // Different filesystem, copy below
+        }
+
+        File partial = partialFor(to);
+        deleteTree(partial);
+        if (from.isDirectory()) {
+            copyTree(from.toPath(), partial.toPath(), progress, cancelled);
+        } else {
+            copyFile(from.toPath(), partial.toPath(), progress, cancelled);
+        }
+        requireAbsent(to);
+        Files.move(partial.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        deleteTree(from);
+    }
+
+    private static void requireAbsent(File to) throws IOException {
+        if (Files.exists(to.toPath(), LinkOption.NOFOLLOW_LINKS)) throw new FileAlreadyExistsException(to.getPath());
+    }
+
+    // Bytes a move of this file or folder has to copy in the worst case.
+    public static long sizeOf(File file) {
+        if (!file.isDirectory()) return file.length();
+        try (Stream<Path> paths = Files.walk(file.toPath())) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Where an unfinished cross-device copy of to lives.
+    public static File partialFor(File to) {
+        return new File(to.getPath() + PARTIAL_SUFFIX);
+    }
+
+    // True for the name of an unfinished copy, which is never a mod or pack of its own.
+    public static boolean isPartial(String name) {
+        return name.endsWith(PARTIAL_SUFFIX);
+    }
+
+    public static void deleteTree(File file) throws IOException {
+        if (!file.exists()) return;
+        if (!file.isDirectory()) {
+            Files.delete(file.toPath());
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(file.toPath())) {
+            List<Path> all = paths.sorted(Comparator.reverseOrder()).toList();
+            for (Path path : all) Files.delete(path);
+        }
+    }
+
+    private static void copyTree(Path from, Path to, AtomicLong progress, AtomicBoolean cancelled) throws IOException {
+        List<Path> all;
+        try (Stream<Path> paths = Files.walk(from)) {
+            all = paths.toList();
+        }
+        for (Path path : all) {
+            Path target = to.resolve(from.relativize(path).toString());
+            if (Files.isDirectory(path)) {
+                Files.createDirectories(target);
+            } else {
+                copyFile(path, target, progress, cancelled);
+            }
+        }
+    }
+
+    private static void copyFile(Path from, Path to, AtomicLong progress, AtomicBoolean cancelled) throws IOException {
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(to, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                if (cancelled.get()) throw new IOException("Cancelled");
+                long copied = in.transferTo(position, Math.min(SLICE_BYTES, size - position), out);
+                position += copied;
+                progress.addAndGet(copied);
+            }
+            out.force(true);
+        }
+    }
+}
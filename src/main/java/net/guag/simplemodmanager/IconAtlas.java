@@ -0,0 +1,157 @@
+package net.guag.simplemodmanager;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.NativeImageBackedTexture;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Packs icons into a few large textures so the mod list binds one texture for
+ * all of its rows. Each page is a grid of equally sized cells; slots are handed
+ * out as icons load and returned when {@link IconCache} evicts them. Pages are
+ * uploaded at most once per frame, and empty extra pages are destroyed; the
+ * cache moves icons off the last page to empty it once the others have room.
+ * Only touched from the render thread.
+ */
+public class IconAtlas {
+    public static final int PAGE_SIZE = 512;
+    // Icons are drawn at 20x20 GUI units; cells hold them at a multiple of that for scaled/HiDPI GUIs
+    public static final int DISPLAY_SIZE = 20;
+    public static final int CELL_SIZE = DISPLAY_SIZE * Math.max(1, Math.min(4, ModManagerConfig.get().iconHiDpiMultiplier));
+    private static final int CELLS_PER_ROW = PAGE_SIZE / CELL_SIZE;
+    private static final int CELLS_PER_PAGE = CELLS_PER_ROW * CELLS_PER_ROW;
+
+    // Where one icon lives: the page texture and the cell's pixel offset in it
+    public record Slot(Page page, int cell, int u, int v) {}
+
+    public static class Page {
+        private final Identifier textureId;
+        private final NativeImageBackedTexture texture;
+        private final BitSet used = new BitSet(CELLS_PER_PAGE);
+        private boolean dirty = false;
+
+        private Page(Identifier textureId, NativeImageBackedTexture texture) {
+            this.textureId = textureId;
+            this.texture = texture;
+        }
+
+        public Identifier getTextureId() {
+            // Upload lazily so a burst of newly loaded icons costs one upload per page
+            if (dirty) {
+                texture.upload();
+                dirty = false;
+            }
+            return textureId;
+        }
+    }
+
+    private static final List<Page> pages = new ArrayList<>();
+    private static int nextPageId = 0;
+
+    // Copies the image into a free cell, scaling it only if the loader didn't already. The caller keeps ownership of the image.
+    public static Slot allocate(NativeImage image) {
+        Page page = null;
+        for (Page candidate : pages) {
+            if (candidate.used.cardinality() < CELLS_PER_PAGE) {
+                page = candidate;
+                break;
+            }
+        }
+        if (page == null) {
+            page = createPage();
+            if (page == null) return null;
+        }
+
+        int cell = page.used.nextClearBit(0);
+        page.used.set(cell);
+        int u = (cell % CELLS_PER_ROW) * CELL_SIZE;
+        int v = (cell / CELLS_PER_ROW) * CELL_SIZE;
+
+        NativeImage target = page.texture.getImage();
+        if (image.getWidth() == CELL_SIZE && image.getHeight() == CELL_SIZE) {
+            image.copyRect(target, 0, 0, u, v, CELL_SIZE, CELL_SIZE, false, false);
+        } else {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            for (int y = 0; y < CELL_SIZE; y++) {
+                for (int x = 0; x < CELL_SIZE; x++) {
+                    // Nearest-neighbour sample of the source into the cell
+                    target.setColorArgb(u + x, v + y, image.getColorArgb(x * width / CELL_SIZE, y * height / CELL_SIZE));
+                }
+            }
+        }
+        page.dirty = true;
+        return new Slot(page, cell, u, v);
+    }
+
+    public static void free(Slot slot) {
+        Page page = slot.page();
+        page.used.clear(slot.cell());
+
+        // Keep one page around, destroy any other page once nothing points into it
+        if (page.used.isEmpty() && pages.size() > 1) {
+            pages.remove(page);
+            MinecraftClient client = MinecraftClient.getInstance();
+            if (client != null && client.getTextureManager() != null) {
+                client.getTextureManager().destroyTexture(page.textureId);
+            }
+        }
+    }
+
+    // Moves an icon on the last page into a free cell of an earlier page and returns its new slot; null if it
+    // isn't on the last page or the earlier pages are full. The last page is destroyed once it is empty.
+    public static Slot moveOffLastPage(Slot slot) {
+        Page last = pages.getLast();
+        if (slot.page() != last) return null;
+        for (int i = 0; i < pages.size() - 1; i++) {
+            Page page = pages.get(i);
+            int cell = page.used.nextClearBit(0);
+            if (cell >= CELLS_PER_PAGE) continue;
+
+            page.used.set(cell);
+            int u = (cell % CELLS_PER_ROW) * CELL_SIZE;
+            int v = (cell / CELLS_PER_ROW) * CELL_SIZE;
+            last.texture.getImage().copyRect(page.texture.getImage(), slot.u(), slot.v(), u - slot.u(), v - slot.v(),
+                    CELL_SIZE, CELL_SIZE, false, false);
+            page.dirty = true;
+            free(slot);
+            return new Slot(page, cell, u, v);
+        }
+        return null;
+    }
+
+    public static int pageCount() {
+        return pages.size();
+    }
+
+    // Pages that this many icons fill when packed tightly.
+    public static int pagesFor(int icons) {
+        return Math.max(1, (icons + CELLS_PER_PAGE - 1) / CELLS_PER_PAGE);
+    }
+
+    public static long bytesPerSlot() {
+        return (long) CELL_SIZE * CELL_SIZE * 4;
+    }
+
+    private static Page createPage() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null || client.getTextureManager() == null) return null;
+
+        String path = "iconatlas/" + (nextPageId++);
+        Identifier textureId = Identifier.of("simplemodmanager", path);
+        try {
+            NativeImageBackedTexture texture = new NativeImageBackedTexture(() -> path, PAGE_SIZE, PAGE_SIZE, true);
+            client.getTextureManager().registerTexture(textureId, texture);
+            Page page = new Page(textureId, texture);
+            pages.add(page);
+            return page;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
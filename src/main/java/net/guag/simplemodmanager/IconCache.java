@@ -0,0 +1,119 @@
+package net.guag.simplemodmanager;
+
+import net.minecraft.client.texture.NativeImage;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide cache of icons, shared by every ModManagerScreen so icons are
+ * uploaded once per game session. Each icon occupies a slot in the
+ * {@link IconAtlas}; slots are kept in LRU order and given back to the atlas
+ * once the configured memory budget is exceeded. The atlas frees memory a whole
+ * page at a time, so after evicting the survivors are packed into as few pages
+ * as they need, which keeps the textures within one page of the budget. Only
+ * touched from the render thread.
+ */
+public class IconCache {
+
+    private record CachedIcon(IconAtlas.Slot slot, long bytes) {}
+
+    // Access-ordered, so iteration starts at the least recently drawn icon
+    private static final LinkedHashMap<String, CachedIcon> icons = new LinkedHashMap<>(64, 0.75f, true);
+    // Files known to have no usable icon
+    private static final Set<String> missing = new HashSet<>();
+    private static long usedBytes = 0;
+
+    // Cache key that changes whenever the file is replaced, built from the inventory scan without any I/O.
+    public static String keyFor(ModToggle mod) {
+        return mod.getIconKey();
+    }
+
+    public static boolean isMissing(String key) {
+        return missing.contains(key);
+    }
+
+    public static void markMissing(String key) {
+        missing.add(key);
+    }
+
+    // Returns the atlas slot for this key, or null if it hasn't been loaded (or was evicted).
+    public static IconAtlas.Slot get(String key) {
+        CachedIcon icon = icons.get(key);
+        return icon != null ? icon.slot() : null;
+    }
+
+    // Packs the already downscaled image into the atlas and closes it; only the atlas copy is kept.
+    public static IconAtlas.Slot put(String key, NativeImage image) {
+        IconAtlas.Slot slot;
+        try {
+            slot = IconAtlas.allocate(image);
+        } finally {
+            image.close();
+        }
+        if (slot == null) {
+            missing.add(key);
+            return null;
+        }
+
+        long bytes = IconAtlas.bytesPerSlot();
+        CachedIcon previous = icons.put(key, new CachedIcon(slot, bytes));
+        if (previous != null) release(previous);
+        usedBytes += bytes;
+        evictOverBudget();
+        return slot;
+    }
+
+    public static void remove(String key) {
+        missing.remove(key);
+        CachedIcon icon = icons.remove(key);
+        if (icon != null) release(icon);
+    }
+
+    public static void clear() {
+        for (CachedIcon icon : icons.values()) {
+            IconAtlas.free(icon.slot());
+        }
+        icons.clear();
+        missing.clear();
+        usedBytes = 0;
+    }
+
+    private static void evictOverBudget() {
+        long budget = (long) ModManagerConfig.get().iconCacheBudgetMb * 1024 * 1024;
+        Iterator<Map.Entry<String, CachedIcon>> it = icons.entrySet().iterator();
+        // Always keep the icon that was just added, even if it alone is over budget
+        while (usedBytes > budget && icons.size() > 1 && it.hasNext()) {
+            CachedIcon icon = it.next().getValue();
+            it.remove();
+            release(icon);
+        }
+        compact();
+    }
+
+    // Evicted slots are scattered over the pages and free nothing until a page is empty, so icons on the last
+    // page move into the holes of the others until no more pages are in use than the icons need.
+    private static void compact() {
+        int needed = IconAtlas.pagesFor(icons.size());
+        boolean moved = true;
+        while (moved && IconAtlas.pageCount() > needed) {
+            moved = false;
+            for (Map.Entry<String, CachedIcon> entry : icons.entrySet()) {
+                if (IconAtlas.pageCount() <= needed) break;
+                IconAtlas.Slot slot = IconAtlas.moveOffLastPage(entry.getValue().slot());
+                if (slot == null) continue;
+                // Not an access, so the LRU order stays as it was
+                entry.setValue(new CachedIcon(slot, entry.getValue().bytes()));
+                moved = true;
+            }
+        }
+    }
+
+    private static void release(CachedIcon icon) {
+        usedBytes -= icon.bytes();
+        IconAtlas.free(icon.slot());
+    }
+}
@@ -0,0 +1,176 @@
+package net.guag.simplemodmanager;
+
+import net.minecraft.client.texture.NativeImage;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Reads, decodes and downscales icons on the background executor. Only the
+ * small, atlas-cell sized image is handed back to the render thread, which
+ * packs it into the {@link IconAtlas} when it drains the results. Results are
+ * also kept in the {@link ThumbnailCache}, so later launches skip the archives.
+ */
+public class IconLoader {
+
+    private record LoadedIcon(String key, NativeImage image) {}
+
+    private static final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private static final Queue<LoadedIcon> loaded = new ConcurrentLinkedQueue<>();
+
+    // Starts loading the icon unless it is already on its way.
+    public static void request(String key, ModToggle mod) {
+        if (!inFlight.add(key)) return;
+        BackgroundTasks.EXECUTOR.execute(() -> {
+            // Always post a result, so a failure outside load()'s own handling can't leave the key in flight
+            NativeImage image = null;
+            try {
+                image = loadThumbnail(key, mod);
+            } catch (RuntimeException e) {
+                System.err.println("Error loading icon of " + mod.getFile().getName() + ": " + e.getMessage());
+            } finally {
+                loaded.add(new LoadedIcon(key, image));
+            }
+        });
+    }
+
+    // Moves finished icons into the cache; call on the render thread once per frame.
+    public static void drainLoaded() {
+        LoadedIcon icon;
+        while ((icon = loaded.poll()) != null) {
+            if (icon.image() == null) {
+                IconCache.markMissing(icon.key());
+            } else {
+                IconCache.put(icon.key(), icon.image());
+            }
+            inFlight.remove(icon.key());
+        }
+    }
+
+    // Unchanged files come straight from the thumbnail file; anything else is read once and stored there.
+    private static NativeImage loadThumbnail(String key, ModToggle mod) {
+        if (ThumbnailCache.contains(key)) {
+            int[] pixels = ThumbnailCache.get(key);
+            return pixels == null ? null : toImage(pixels, IconAtlas.CELL_SIZE);
+        }
+
+        NativeImage image = load(mod);
+        ThumbnailCache.put(key, image == null ? null : toPixels(image));
+        return image;
+    }
+
+    private static NativeImage toImage(int[] pixels, int size) {
+        NativeImage image = new NativeImage(size, size, false);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setColorArgb(x, y, pixels[y * size + x]);
+            }
+        }
+        return image;
+    }
+
+    private static int[] toPixels(NativeImage image) {
+        int size = image.getWidth();
+        int[] pixels = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                pixels[y * size + x] = image.getColorArgb(x, y);
+            }
+        }
+        return pixels;
+    }
+
+    private static NativeImage load(ModToggle mod) {
+        // The descriptor already knows where the icon lives (or that there is none)
+        ModDescriptor descriptor = ModMetadataIndex.get(mod);
+        if (!descriptor.hasIcon()) return null;
+
+        // Check if file exists in the correct location
+        File modFile = ModMetadataIndex.resolveFile(mod.getFile());
+        if (!modFile.exists()) return null;
+
+        try (InputStream stream = openIconStream(modFile, descriptor.iconPath());
+             NativeImage image = NativeImage.read(stream)) {
+            // Keep only what the list can actually show
+            return downscale(image, IconAtlas.CELL_SIZE);
+        } catch (Exception e) {
+            System.err.println("Error reading icon from " + modFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Box filter to a size x size square, averaging colour weighted by alpha so edges don't darken.
+    private static NativeImage downscale(NativeImage source, int size) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        NativeImage result = new NativeImage(size, size, false);
+
+        for (int y = 0; y < size; y++) {
+            int y0 = y * height / size;
+            int y1 = Math.max(y0 + 1, (y + 1) * height / size);
+            for (int x = 0; x < size; x++) {
+                int x0 = x * width / size;
+                int x1 = Math.max(x0 + 1, (x + 1) * width / size);
+
+                long a = 0, r = 0, g = 0, b = 0;
+                for (int sy = y0; sy < y1; sy++) {
+                    for (int sx = x0; sx < x1; sx++) {
+                        int argb = source.getColorArgb(sx, sy);
+                        int alpha = argb >>> 24;
+                        a += alpha;
+                        r += (long) ((argb >> 16) & 0xFF) * alpha;
+                        g += (long) ((argb >> 8) & 0xFF) * alpha;
+                        b += (long) (argb & 0xFF) * alpha;
+                    }
+                }
+                int count = (x1 - x0) * (y1 - y0);
+                int outA = (int) (a / count);
+                int outR = a == 0 ? 0 : (int) (r / a);
+                int outG = a == 0 ? 0 : (int) (g / a);
+                int outB = a == 0 ? 0 : (int) (b / a);
+                result.setColorArgb(x, y, (outA << 24) | (outR << 16) | (outG << 8) | outB);
+            }
+        }
+        return result;
+    }
+
+    // Reads the icon entry straight from a folder pack or an archive; the stream owns the archive.
+    private static InputStream openIconStream(File modFile, String iconPath) throws IOException {
+        if (modFile.isDirectory()) {
+            return new FileInputStream(new File(modFile, iconPath));
+        }
+        if (!modFile.getName().endsWith(".jar")) {
+            // Pack zips can be huge, so skip opening them as a ZipFile and read just the one entry
+            byte[] icon = ZipIndex.readEntry(modFile, iconPath);
+            if (icon == null) throw new IOException("Missing icon entry " + iconPath);
+            return new ByteArrayInputStream(icon);
+        }
+
+        JarFile jar = new JarFile(modFile);
+        JarEntry entry = jar.getJarEntry(iconPath);
+        if (entry == null) {
+            jar.close();
+            throw new IOException("Missing icon entry " + iconPath);
+        }
+        return new FilterInputStream(jar.getInputStream(entry)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    jar.close();
+                }
+            }
+        };
+    }
+}
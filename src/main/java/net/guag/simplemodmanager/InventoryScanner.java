@@ -0,0 +1,122 @@
+package net.guag.simplemodmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Walks the active and disabled folder of every category at the same time and
+ * returns one {@link Snapshot} with the size and mtime of each entry. The
+ * attributes come with the directory walk ({@link Files#walkFileTree}), which
+ * on Windows reads them from the listing itself instead of opening each file;
+ * elsewhere it is one stat per entry either way.
+ */
+public class InventoryScanner {
+
+    public enum Category {
+        MODS(ModUtils.MODS_FOLDER, ModUtils.DISABLED_MODS_FOLDER),
+        RESOURCEPACKS(ModUtils.RESOURCEPACKS_FOLDER, ModUtils.DISABLED_RESOURCEPACKS_FOLDER),
+        SHADERPACKS(ModUtils.SHADERPACKS_FOLDER, ModUtils.DISABLED_SHADERPACKS_FOLDER);
+
+        public final File activeFolder;
+        public final File disabledFolder;
+
+        Category(File activeFolder, File disabledFolder) {
+            this.activeFolder = activeFolder;
+            this.disabledFolder = disabledFolder;
+        }
+
+        // Same filters ModUtils has always applied to each folder, minus the copies an apply has in progress.
+        public boolean accepts(String name) {
+            if (FileMover.isPartial(name)) return false;
+            if (this == MODS) return name.endsWith(".jar");
+            return !name.endsWith(".txt") && !name.endsWith(".DS_Store") && !name.contains(disabledFolder.getName());
+        }
+    }
+
+    public record Entry(File file, boolean enabled, long size, long lastModified, boolean directory) {}
+
+    public record Snapshot(Map<Category, List<Entry>> entries) {
+        public Snapshot {
+            entries = Map.copyOf(entries);
+        }
+
+        public List<Entry> get(Category category) {
+            return entries.getOrDefault(category, List.of());
+        }
+    }
+
+    private static volatile Snapshot latest;
+
+    // The most recent scan, so callers that only need names don't walk the folders again.
+    public static Snapshot latest() {
+        Snapshot snapshot = latest;
+        return snapshot != null ? snapshot : scan();
+    }
+
+    // Replaces the latest snapshot, used by InventoryWatcher as files come and go.
+    static void publish(Snapshot snapshot) {
+        latest = snapshot;
+    }
+
+    // Scans all six folders concurrently and waits for the combined result.
+    public static Snapshot scan() {
+        Map<Category, CompletableFuture<List<Entry>>> active = new EnumMap<>(Category.class);
+        Map<Category, CompletableFuture<List<Entry>>> disabled = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            active.put(category, CompletableFuture.supplyAsync(() -> scanFolder(category, true), BackgroundTasks.EXECUTOR));
+            disabled.put(category, CompletableFuture.supplyAsync(() -> scanFolder(category, false), BackgroundTasks.EXECUTOR));
+        }
+
+        Map<Category, List<Entry>> result = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            List<Entry> entries = new ArrayList<>(active.get(category).join());
+            entries.addAll(disabled.get(category).join());
+            result.put(category, List.copyOf(entries));
+        }
+        Snapshot snapshot = new Snapshot(result);
+        latest = snapshot;
+        return snapshot;
+    }
+
+    // Lists one folder; missing or unreadable folders just come back empty.
+    public static List<Entry> scanFolder(Category category, boolean enabled) {
+        Path folder = (enabled ? category.activeFolder : category.disabledFolder).toPath();
+        List<Entry> entries = new ArrayList<>();
+        // Depth 1 hands folder packs to visitFile too, with the same attributes Files.readAttributes gives;
+        // links are followed like readAttributes does, so sizes match ContentHashes' folderSize
+        try {
+            Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    if (category.accepts(path.getFileName().toString())) {
+                        entries.add(new Entry(path.toFile(), enabled, attrs.size(), attrs.lastModifiedTime().toMillis(), attrs.isDirectory()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) {
+                    // A missing folder, or an entry removed between listing and reading attributes
+                    if (!(e instanceof NoSuchFileException)) e.printStackTrace();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return entries;
+    }
+}
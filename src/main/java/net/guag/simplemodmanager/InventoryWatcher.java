@@ -0,0 +1,210 @@
+package net.guag.simplemodmanager;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link InventoryScanner#latest()} up to date in the background by
+ * watching the six ModUtils folders. Bursts of events (a pack being copied in,
+ * a batch of moves) are coalesced and applied as one new snapshot, and only
+ * the files named in the events are re-read. A folder that stops being
+ * watchable (deleted or renamed) is watched again if it is back; otherwise the
+ * watcher stops and screens fall back to scanning the folders themselves.
+ */
+public class InventoryWatcher {
+    // Quiet period after the last event before the changes are published
+    private static final long COALESCE_MS = 150;
+
+    private record Folder(InventoryScanner.Category category, boolean enabled) {}
+
+    private static WatchService watchService;
+    private static Thread thread;
+    private static final Map<WatchKey, Folder> folders = new HashMap<>();
+    // Entries of each watched folder by file name, kept sorted so the list order is stable
+    private static final Map<Folder, TreeMap<String, InventoryScanner.Entry>> contents = new HashMap<>();
+
+    public static synchronized void start() {
+        if (thread != null) return;
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (InventoryScanner.Category category : InventoryScanner.Category.values()) {
+                register(new Folder(category, true));
+                register(new Folder(category, false));
+            }
+        } catch (IOException e) {
+            // Without a watcher every screen open simply rescans the folders
+            e.printStackTrace();
+            stop();
+            return;
+        }
+
+        InventoryScanner.Snapshot initial = InventoryScanner.scan();
+        for (Folder folder : contents.keySet()) {
+            for (InventoryScanner.Entry entry : initial.get(folder.category())) {
+                if (entry.enabled() == folder.enabled()) contents.get(folder).put(entry.file().getName(), entry);
+            }
+        }
+        publish();
+
+        thread = new Thread(InventoryWatcher::run, "SimpleModManager Inventory Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static synchronized void stop() {
+        try {
+            if (watchService != null) watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        watchService = null;
+        thread = null;
+        folders.clear();
+        contents.clear();
+    }
+
+    public static boolean isRunning() {
+        return thread != null;
+    }
+
+    // The live inventory if the watcher is running, otherwise a fresh scan.
+    public static InventoryScanner.Snapshot current() {
+        return isRunning() ? InventoryScanner.latest() : InventoryScanner.scan();
+    }
+
+    private static void register(Folder folder) throws IOException {
+        Path dir = (folder.enabled() ? folder.category().activeFolder : folder.category().disabledFolder).toPath();
+        WatchKey key = dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        folders.put(key, folder);
+        contents.put(folder, new TreeMap<>());
+    }
+
+    private static void run() {
+        WatchService service = watchService;
+        try {
+            while (true) {
+                Map<Path, Folder> changedPaths = new HashMap<>();
+                Set<Folder> overflowed = new HashSet<>();
+                Set<Folder> lost = new HashSet<>();
+
+                // Block for the first event, then keep draining until things go quiet
+                WatchKey key = service.take();
+                while (key != null) {
+                    collect(key, changedPaths, overflowed, lost);
+                    key = service.poll(COALESCE_MS, TimeUnit.MILLISECONDS);
+                }
+
+                synchronized (InventoryWatcher.class) {
+                    if (watchService != service) return;
+                    if (!rewatch(lost)) {
+                        // The inventory can no longer be kept current, so stop claiming it is
+                        stop();
+                        return;
+                    }
+                    // A folder watched again may have changed in between, so it is rescanned as a whole
+                    overflowed.addAll(lost);
+                    apply(changedPaths, overflowed);
+                    publish();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher stopped
+        }
+    }
+
+    private static void collect(WatchKey key, Map<Path, Folder> changedPaths, Set<Folder> overflowed, Set<Folder> lost) {
+        Folder folder = folders.get(key);
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (folder == null) continue;
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed.add(folder);
+                continue;
+            }
+            Path name = (Path) event.context();
+            if (folder.category().accepts(name.toString())) {
+                changedPaths.put(dir.resolve(name), folder);
+            }
+        }
+        // A key that can't be reset no longer reports anything; its folder was deleted or renamed
+        if (!key.reset() && folder != null) lost.add(folder);
+    }
+
+    // Drops the keys of folders that stopped being watchable and registers the folders again; false if one of
+    // them can't be watched any more.
+    private static boolean rewatch(Set<Folder> lost) {
+        for (Folder folder : lost) {
+            folders.values().remove(folder);
+            try {
+                register(folder);
+            } catch (IOException e) {
+                System.err.println("Stopped watching the mod folders: " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Re-reads only the paths named in the events; an overflowed folder is rescanned as a whole.
+    private static void apply(Map<Path, Folder> changedPaths, Set<Folder> overflowed) {
+        for (Folder folder : overflowed) {
+            TreeMap<String, InventoryScanner.Entry> entries = contents.get(folder);
+            entries.clear();
+            for (InventoryScanner.Entry entry : InventoryScanner.scanFolder(folder.category(), folder.enabled())) {
+                entries.put(entry.file().getName(), entry);
+            }
+        }
+
+        for (Map.Entry<Path, Folder> change : changedPaths.entrySet()) {
+            Folder folder = change.getValue();
+            if (overflowed.contains(folder)) continue;
+
+            Path path = change.getKey();
+            String name = path.getFileName().toString();
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                contents.get(folder).put(name, new InventoryScanner.Entry(path.toFile(), folder.enabled(),
+                        attrs.size(), attrs.lastModifiedTime().toMillis(), attrs.isDirectory()));
+            } catch (NoSuchFileException e) {
+                contents.get(folder).remove(name);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void publish() {
+        Map<InventoryScanner.Category, List<InventoryScanner.Entry>> result = new EnumMap<>(InventoryScanner.Category.class);
+        for (InventoryScanner.Category category : InventoryScanner.Category.values()) {
+            List<InventoryScanner.Entry> entries = new ArrayList<>();
+            TreeMap<String, InventoryScanner.Entry> enabled = contents.get(new Folder(category, true));
+            TreeMap<String, InventoryScanner.Entry> disabled = contents.get(new Folder(category, false));
+            if (enabled != null) entries.addAll(enabled.values());
+            if (disabled != null) entries.addAll(disabled.values());
+            result.put(category, List.copyOf(entries));
+        }
+        InventoryScanner.publish(new InventoryScanner.Snapshot(result));
+    }
+}
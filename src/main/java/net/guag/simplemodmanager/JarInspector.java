@@ -0,0 +1,352 @@
+package net.guag.simplemodmanager;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens a mod jar (or pack zip/folder) once and reads both its fabric.mod.json
+ * and the location of its icon, so no caller has to reopen the archive for
+ * metadata. Jars bundled under META-INF/jars are streamed from the outer
+ * archive for their ids, versions and provides.
+ */
+public class JarInspector {
+    // Jar-in-jar can nest; libraries of libraries are as deep as real mods go
+    private static final int MAX_NESTING = 4;
+
+    public static ModDescriptor inspect(File file) {
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        if (file.isDirectory()) {
+            // Folder resource/shader packs have no fabric metadata, only a possible pack.png and pack.mcmeta
+            String iconPath = new File(file, "pack.png").isFile() ? "pack.png" : null;
+            PackMeta meta = PackMeta.NONE;
+            File packMeta = new File(file, "pack.mcmeta");
+            if (packMeta.isFile()) {
+                try (InputStream stream = new FileInputStream(packMeta)) {
+                    meta = readPackMeta(stream);
+                } catch (Exception e) {
+                    System.err.println("Error reading pack.mcmeta of " + file.getName() + ": " + e.getMessage());
+                }
+            }
+            return packDescriptor(file, size, lastModified, meta, iconPath);
+        }
+
+        if (!file.getName().endsWith(".jar")) {
+            // Packs can be hundreds of megabytes; only their directory and the few entries needed are read
+            try {
+                return inspectPackZip(file, size, lastModified);
+            } catch (Exception e) {
+                System.err.println("Error inspecting " + file.getName() + ": " + e.getMessage());
+                return new ModDescriptor(file.getName(), size, lastModified, ModDescriptor.Status.ERROR,
+                        null, null, null, null, List.of(), Map.of(), Map.of(), Map.of(), List.of(), List.of(), null, 0);
+            }
+        }
+
+        try (JarFile jar = new JarFile(file)) {
+            JarEntry entry = jar.getJarEntry("fabric.mod.json");
+            if (entry == null) {
+                // Resource pack zips describe themselves in pack.mcmeta instead
+                JarEntry packMeta = jar.getJarEntry("pack.mcmeta");
+                PackMeta meta = PackMeta.NONE;
+                if (packMeta != null) {
+                    try (InputStream stream = jar.getInputStream(packMeta)) {
+                        meta = readPackMeta(stream);
+                    }
+                }
+                return packDescriptor(file, size, lastModified, meta, findIconPath(jar, file.getName(), null));
+            }
+
+            JsonElement je;
+            try (InputStreamReader reader = new InputStreamReader(jar.getInputStream(entry), StandardCharsets.UTF_8)) {
+                je = JsonParser.parseReader(reader);
+            }
+            if (!je.isJsonObject()) {
+                return new ModDescriptor(file.getName(), size, lastModified, ModDescriptor.Status.INVALID,
+                        null, null, null, null, List.of(), Map.of(), Map.of(), Map.of(), List.of(), List.of(), findIconPath(jar, file.getName(), null), 0);
+            }
+
+            JsonObject root = je.getAsJsonObject();
+            return new ModDescriptor(
+                    file.getName(), size, lastModified, ModDescriptor.Status.OK,
+                    getString(root, "id"),
+                    getString(root, "name"),
+                    getString(root, "version"),
+                    getString(root, "description"),
+                    readAuthors(root),
+                    readDependencyMap(root, "depends"),
+                    readDependencyMap(root, "recommends"),
+                    readDependencyMap(root, "breaks"),
+                    readStringList(root, "provides"),
+                    readBundled(jar, root),
+                    findIconPath(jar, file.getName(), readDeclaredIcon(root)),
+                    0
+            );
+        } catch (Exception e) {
+            System.err.println("Error inspecting " + file.getName() + ": " + e.getMessage());
+            return new ModDescriptor(file.getName(), size, lastModified, ModDescriptor.Status.ERROR,
+                    null, null, null, null, List.of(), Map.of(), Map.of(), Map.of(), List.of(), List.of(), null, 0);
+        }
+    }
+
+    // Nested jars are read straight out of the outer archive's stream, so nothing is extracted to disk.
+    private static List<ModDescriptor.BundledMod> readBundled(JarFile jar, JsonObject root) {
+        List<ModDescriptor.BundledMod> result = new ArrayList<>();
+        for (String path : readNestedJarPaths(root)) {
+            JarEntry entry = jar.getJarEntry(path);
+            if (entry == null) continue;
+            try (InputStream stream = jar.getInputStream(entry)) {
+                readNestedJar(stream, path, 1, result);
+            } catch (Exception e) {
+                System.err.println("Error reading bundled " + path + ": " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    // Streams one nested jar until its fabric.mod.json, then follows that file's own "jars" in the same pass.
+    private static void readNestedJar(InputStream stream, String path, int depth, List<ModDescriptor.BundledMod> result) throws IOException {
+        ZipInputStream zip = new ZipInputStream(stream);
+        boolean metadataRead = false;
+        Set<String> wanted = new HashSet<>();
+        Set<String> done = new HashSet<>();
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            String name = entry.getName();
+            if (!metadataRead && name.equals("fabric.mod.json")) {
+                // Read without closing, the reader would close the whole zip stream
+                JsonElement je = JsonParser.parseString(new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+                if (!je.isJsonObject()) return;
+                JsonObject metadata = je.getAsJsonObject();
+                metadataRead = true;
+                result.add(new ModDescriptor.BundledMod(path, getString(metadata, "id"), getString(metadata, "version"),
+                        readStringList(metadata, "provides")));
+                if (depth >= MAX_NESTING) return;
+                wanted.addAll(readNestedJarPaths(metadata));
+                wanted.removeAll(done);
+                if (wanted.isEmpty()) return;
+            } else if (depth < MAX_NESTING && (wanted.contains(name) || (!metadataRead && isNestedJar(name)))) {
+                // Usually these come after fabric.mod.json; ones seen before it are read on the assumption it lists them
+                readNestedJar(new NonClosingInputStream(zip), path + "!/" + name, depth + 1, result);
+                done.add(name);
+                wanted.remove(name);
+                if (metadataRead && wanted.isEmpty()) return;
+            }
+        }
+    }
+
+    private static boolean isNestedJar(String name) {
+        return name.startsWith("META-INF/jars/") && name.endsWith(".jar");
+    }
+
+    // "jars" is an array of {"file": "META-INF/jars/..."}
+    private static List<String> readNestedJarPaths(JsonObject root) {
+        List<String> result = new ArrayList<>();
+        if (!root.has("jars") || !root.get("jars").isJsonArray()) return result;
+        for (JsonElement jarEntry : root.getAsJsonArray("jars")) {
+            if (!jarEntry.isJsonObject()) continue;
+            String path = getString(jarEntry.getAsJsonObject(), "file");
+            if (path != null) result.add(path);
+        }
+        return result;
+    }
+
+    private static List<String> readStringList(JsonObject root, String key) {
+        List<String> result = new ArrayList<>();
+        if (!root.has(key) || !root.get(key).isJsonArray()) return result;
+        for (JsonElement element : root.getAsJsonArray(key)) {
+            if (element.isJsonPrimitive()) result.add(element.getAsString());
+        }
+        return result;
+    }
+
+    // Lets a nested ZipInputStream read the current entry without closing the outer stream.
+    private static final class NonClosingInputStream extends FilterInputStream {
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    // The parts of pack.mcmeta the list shows
+    private record PackMeta(String description, int format) {
+        static final PackMeta NONE = new PackMeta(null, 0);
+    }
+
+    private static ModDescriptor packDescriptor(File file, long size, long lastModified, PackMeta meta, String iconPath) {
+        return new ModDescriptor(file.getName(), size, lastModified, ModDescriptor.Status.NO_METADATA,
+                null, null, null, meta.description(), List.of(), Map.of(), Map.of(), Map.of(), List.of(), List.of(), iconPath, meta.format());
+    }
+
+    // Reads pack.mcmeta and finds the icon of a pack zip through its central directory alone.
+    private static ModDescriptor inspectPackZip(File file, long size, long lastModified) throws IOException {
+        String packId = file.getName().replaceAll("\\.(jar|zip|json)$", "");
+        String[] iconCandidates = {
+                "pack.png",
+                "icon.png",
+                "assets/" + packId + "/icon.png",
+                "assets/" + packId + "/textures/icon.png"
+        };
+        String[] wanted = new String[iconCandidates.length + 1];
+        wanted[0] = "pack.mcmeta";
+        System.arraycopy(iconCandidates, 0, wanted, 1, iconCandidates.length);
+
+        Map<String, ZipIndex.Entry> entries;
+        PackMeta meta = PackMeta.NONE;
+        try (ZipIndex zip = ZipIndex.open(file)) {
+            entries = zip.find(wanted);
+            ZipIndex.Entry packMeta = entries.get("pack.mcmeta");
+            if (packMeta != null) meta = readPackMeta(new ByteArrayInputStream(zip.read(packMeta)));
+        }
+        String iconPath = null;
+        for (String candidate : iconCandidates) {
+            if (entries.containsKey(candidate)) {
+                iconPath = candidate;
+                break;
+            }
+        }
+        return packDescriptor(file, size, lastModified, meta, iconPath);
+    }
+
+    // "pack.description" is a plain string or a text component (object with text/extra, or an array of them).
+    // The format is "pack_format", or the lowest of "min_format" on packs made for newer versions.
+    private static PackMeta readPackMeta(InputStream stream) {
+        JsonElement je = JsonParser.parseReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        if (!je.isJsonObject() || !je.getAsJsonObject().has("pack")) return PackMeta.NONE;
+        JsonElement packElement = je.getAsJsonObject().get("pack");
+        if (!packElement.isJsonObject()) return PackMeta.NONE;
+        JsonObject pack = packElement.getAsJsonObject();
+
+        String description = null;
+        if (pack.has("description")) {
+            StringBuilder text = new StringBuilder();
+            appendText(pack.get("description"), text);
+            // Drop legacy formatting codes like "\u00a7a"
+            description = text.toString().replaceAll("\u00a7.", "").trim();
+        }
+        int format = readFormat(pack.get("pack_format"));
+        if (format == 0) format = readFormat(pack.get("min_format"));
+        return new PackMeta(description, format);
+    }
+
+    // A format is a number, or [major, minor] since 1.21.9
+    private static int readFormat(JsonElement element) {
+        try {
+            if (element == null) return 0;
+            if (element.isJsonPrimitive()) return element.getAsInt();
+            if (element.isJsonArray() && !element.getAsJsonArray().isEmpty()) return element.getAsJsonArray().get(0).getAsInt();
+        } catch (RuntimeException ignored) {}
+        return 0;
+    }
+
+    private static void appendText(JsonElement component, StringBuilder text) {
+        if (component.isJsonPrimitive()) {
+            text.append(component.getAsString());
+        } else if (component.isJsonArray()) {
+            for (JsonElement part : component.getAsJsonArray()) appendText(part, text);
+        } else if (component.isJsonObject()) {
+            JsonObject obj = component.getAsJsonObject();
+            if (obj.has("text")) appendText(obj.get("text"), text);
+            if (obj.has("extra")) appendText(obj.get("extra"), text);
+        }
+    }
+
+    // Authors can be an array of strings or person objects, or a single string
+    private static List<String> readAuthors(JsonObject root) {
+        List<String> result = new ArrayList<>();
+        if (!root.has("authors")) return result;
+
+        JsonElement authors = root.get("authors");
+        if (authors.isJsonArray()) {
+            for (JsonElement author : authors.getAsJsonArray()) {
+                if (author.isJsonObject()) {
+                    String name = getString(author.getAsJsonObject(), "name");
+                    if (name != null) result.add(name);
+                } else if (author.isJsonPrimitive()) {
+                    result.add(author.getAsString());
+                }
+            }
+        } else if (authors.isJsonPrimitive()) {
+            result.add(authors.getAsString());
+        }
+        return result;
+    }
+
+    private static Map<String, String> readDependencyMap(JsonObject root, String key) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (!root.has(key) || !root.get(key).isJsonObject()) return result;
+
+        for (Map.Entry<String, JsonElement> dep : root.getAsJsonObject(key).entrySet()) {
+            JsonElement value = dep.getValue();
+            result.put(dep.getKey(), value.isJsonPrimitive() ? value.getAsString() : value.toString());
+        }
+        return result;
+    }
+
+    // "icon" is either a path or a map of size -> path; take the smallest size
+    private static String readDeclaredIcon(JsonObject root) {
+        if (!root.has("icon")) return null;
+
+        JsonElement icon = root.get("icon");
+        if (icon.isJsonPrimitive()) return icon.getAsString();
+        if (!icon.isJsonObject()) return null;
+
+        String iconPath = null;
+        int best = Integer.MAX_VALUE;
+        for (Map.Entry<String, JsonElement> size : icon.getAsJsonObject().entrySet()) {
+            try {
+                int px = Integer.parseInt(size.getKey());
+                if (px < best) {
+                    best = px;
+                    iconPath = size.getValue().getAsString();
+                }
+            } catch (NumberFormatException ignored) {}
+        }
+        return iconPath;
+    }
+
+    // Declared icon first, then the same lookup order the icon renderer has always used.
+    private static String findIconPath(JarFile jar, String fileName, String declaredIcon) {
+        if (declaredIcon != null && jar.getJarEntry(declaredIcon) != null) {
+            return declaredIcon;
+        }
+        String modId = fileName.replaceAll("\\.(jar|zip|json)$", "");
+        String[] candidates = {
+                "pack.png",
+                "icon.png",
+                "assets/" + modId + "/icon.png",
+                "assets/" + modId + "/textures/icon.png"
+        };
+        for (String candidate : candidates) {
+            if (jar.getJarEntry(candidate) != null) return candidate;
+        }
+        return null;
+    }
+
+    private static String getString(JsonObject obj, String key) {
+        if (!obj.has(key) || !obj.get(key).isJsonPrimitive()) return null;
+        return obj.get(key).getAsString();
+    }
+}
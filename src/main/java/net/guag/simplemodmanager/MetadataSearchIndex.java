@@ -0,0 +1,154 @@
+package net.guag.simplemodmanager;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from the words of each mod's name, id, authors and description
+ * (and each pack's pack.mcmeta description) to the paths of the files they
+ * appear in, so copies of one name in two folders, or a resource pack and a
+ * shader pack that share a name, are indexed apart. It is filled on the
+ * background executor from the {@link ModMetadataIndex} and only re-indexes
+ * files whose size or mtime changed, so keeping it current after an inventory
+ * change is cheap. Lookups are by word prefix, optionally limited to
+ * one field, which is what queries like "author:jelly" or "id:sodium" use.
+ */
+public class MetadataSearchIndex {
+
+    public enum Field {
+        NAME("name"), ID("id"), AUTHOR("author"), DESCRIPTION("description");
+
+        public final String prefix;
+
+        Field(String prefix) {
+            this.prefix = prefix;
+        }
+
+        // Accepts the full prefix or any abbreviation of it, e.g. "desc"; null if it names no field.
+        public static Field parse(String name) {
+            if (name.isEmpty()) return null;
+            for (Field field : values()) {
+                if (field.prefix.startsWith(name)) return field;
+            }
+            return null;
+        }
+    }
+
+    private record Indexed(String key, Map<Field, Set<String>> words) {}
+
+    // Word -> file paths, per field
+    private static final Map<Field, NavigableMap<String, Set<String>>> postings = new EnumMap<>(Field.class);
+    // What each file was indexed with, so a changed file can be taken out again
+    private static final Map<String, Indexed> indexed = new HashMap<>();
+    private static volatile int version = 0;
+
+    static {
+        for (Field field : Field.values()) postings.put(field, new TreeMap<>());
+    }
+
+    // Brings the index in line with the installed files (mods and packs together); run on the background executor.
+    public static void update(Collection<ModToggle> toggles) {
+        Set<String> present = new HashSet<>();
+        boolean changed = false;
+        for (ModToggle toggle : toggles) {
+            String path = DependencyGraph.keyOf(toggle);
+            present.add(path);
+            String key = toggle.getIconKey();
+            synchronized (MetadataSearchIndex.class) {
+                Indexed current = indexed.get(path);
+                if (current != null && current.key().equals(key)) continue;
+            }
+
+            // Reading the descriptor may open the jar, so do it outside the lock
+            Indexed entry = new Indexed(key, wordsOf(ModMetadataIndex.get(toggle)));
+            synchronized (MetadataSearchIndex.class) {
+                remove(path);
+                add(path, entry);
+            }
+            changed = true;
+        }
+
+        synchronized (MetadataSearchIndex.class) {
+            for (String path : new HashSet<>(indexed.keySet())) {
+                if (!present.contains(path)) {
+                    remove(path);
+                    changed = true;
+                }
+            }
+            if (changed) version++;
+        }
+    }
+
+    // Paths (DependencyGraph.keyOf) of the files with a word starting with prefix in the given field, or in any field when null.
+    public static synchronized Set<String> find(Field field, String prefix) {
+        Set<String> result = new HashSet<>();
+        for (Field f : Field.values()) {
+            if (field != null && f != field) continue;
+            NavigableMap<String, Set<String>> words = postings.get(f);
+            for (Set<String> files : words.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                result.addAll(files);
+            }
+        }
+        return result;
+    }
+
+    // Changes whenever an update changed anything, so searches know earlier results may be stale.
+    public static int version() {
+        return version;
+    }
+
+    private static void add(String path, Indexed entry) {
+        indexed.put(path, entry);
+        for (Map.Entry<Field, Set<String>> field : entry.words().entrySet()) {
+            NavigableMap<String, Set<String>> words = postings.get(field.getKey());
+            for (String word : field.getValue()) {
+                words.computeIfAbsent(word, w -> new HashSet<>()).add(path);
+            }
+        }
+    }
+
+    private static void remove(String path) {
+        Indexed entry = indexed.remove(path);
+        if (entry == null) return;
+        for (Map.Entry<Field, Set<String>> field : entry.words().entrySet()) {
+            NavigableMap<String, Set<String>> words = postings.get(field.getKey());
+            for (String word : field.getValue()) {
+                Set<String> files = words.get(word);
+                if (files == null) continue;
+                files.remove(path);
+                if (files.isEmpty()) words.remove(word);
+            }
+        }
+    }
+
+    private static Map<Field, Set<String>> wordsOf(ModDescriptor descriptor) {
+        Map<Field, Set<String>> words = new EnumMap<>(Field.class);
+        addWords(words, Field.NAME, descriptor.name());
+        addWords(words, Field.ID, descriptor.id());
+        // Ids are matched whole too, so "id:sodium-extra" finds exactly that mod
+        if (descriptor.id() != null) words.get(Field.ID).add(descriptor.id().toLowerCase());
+        // A jar also answers to the ids it provides or bundles
+        for (String provided : descriptor.provides()) words.get(Field.ID).add(provided.toLowerCase());
+        for (ModDescriptor.BundledMod bundled : descriptor.bundled()) {
+            if (bundled.id() != null) words.get(Field.ID).add(bundled.id().toLowerCase());
+            for (String provided : bundled.provides()) words.get(Field.ID).add(provided.toLowerCase());
+        }
+        for (String author : descriptor.authors()) addWords(words, Field.AUTHOR, author);
+        addWords(words, Field.DESCRIPTION, descriptor.description());
+        return words;
+    }
+
+    private static void addWords(Map<Field, Set<String>> words, Field field, String text) {
+        Set<String> set = words.computeIfAbsent(field, f -> new HashSet<>());
+        if (text == null) return;
+        String normalized = SearchIndex.normalize(text);
+        if (normalized.isEmpty()) return;
+        for (String word : normalized.split(" ")) set.add(word);
+    }
+}
@@ -0,0 +1,182 @@
+package net.guag.simplemodmanager;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.fabricmc.loader.api.metadata.ModOrigin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Tells the profilers which mod jar a stack frame belongs to. The index maps
+ * every class package in the mod jars, bundled jars included, to the path
+ * of the jar in the mods folder that ships it (see {@link #keyOf}), so an
+ * enabled jar and a disabled copy of the same name stay apart. Packages
+ * found in more than one jar are settled by asking the class loader where
+ * the class came from, once per class.
+ *
+ * Code a mod injects into game classes runs in methods named after the mod,
+ * so those frames are resolved through the mod id instead.
+ */
+public class ModClassIndex {
+    // Fabric's mixin prefixes injected handlers with the owning mod id, e.g. handler$zza000$sodium$onInit
+    private static final Pattern MIXIN_HANDLER = Pattern.compile("^[a-zA-Z]+\\$[a-z0-9]+\\$([a-z0-9_\\-]+)\\$");
+    // Packages shipped by several jars
+    private static final String AMBIGUOUS = "";
+
+    private final Map<String, String> jarOfPackage;
+    private final Map<String, String> jarOfClass = new HashMap<>();
+    private final Map<String, String> jarOfMod = new HashMap<>();
+    private final Path modsFolder;
+
+    private ModClassIndex(Map<String, String> jarOfPackage) {
+        this.jarOfPackage = jarOfPackage;
+        this.modsFolder = FabricLoader.getInstance().getGameDir().resolve("mods").toAbsolutePath().normalize();
+    }
+
+    // Reads the class lists of the mod jars in the inventory. Enabled jars win over disabled copies of themselves.
+    public static ModClassIndex build(InventoryScanner.Snapshot inventory) {
+        Map<String, String> packages = new HashMap<>();
+        for (boolean enabled : new boolean[]{true, false}) {
+            Map<String, String> found = new HashMap<>();
+            for (InventoryScanner.Entry entry : inventory.get(InventoryScanner.Category.MODS)) {
+                if (entry.enabled() != enabled) continue;
+                indexJar(entry.file(), found);
+            }
+            for (Map.Entry<String, String> pkg : found.entrySet()) packages.putIfAbsent(pkg.getKey(), pkg.getValue());
+        }
+        return new ModClassIndex(packages);
+    }
+
+    // How the profilers name a jar: its absolute, normalized path, the same form the loader reports.
+    public static String keyOf(File jar) {
+        return jar.toPath().toAbsolutePath().normalize().toString();
+    }
+
+    // The jar a frame's code comes from, or null for the game, the loader, libraries and the JDK.
+    // Not thread-safe; each profiler resolves frames on its own thread.
+    public String jarOf(StackTraceElement frame) {
+        String modId = mixinOwner(frame.getMethodName());
+        if (modId != null) {
+            String jar = jarOfMod.computeIfAbsent(modId, ModClassIndex::jarOfMod);
+            if (!jar.isEmpty()) return jar;
+        }
+
+        String className = frame.getClassName();
+        int dot = className.lastIndexOf('.');
+        if (dot < 0) return null;
+        String jar = jarOfPackage.get(className.substring(0, dot));
+        if (jar == null) return null;
+        if (jar.equals(AMBIGUOUS)) jar = jarOfClass.computeIfAbsent(className, name -> jarOfLoadedClass(name, modsFolder));
+        return jar.isEmpty() ? null : jar;
+    }
+
+    // The mod id in the name of a method a mixin injected, or null.
+    public static String mixinOwner(String methodName) {
+        if (methodName.indexOf('$') < 0) return null;
+        Matcher handler = MIXIN_HANDLER.matcher(methodName);
+        return handler.find() ? handler.group(1) : null;
+    }
+
+    // Path of the mods folder jar a loaded class comes from, or "" for the game, the loader and the JDK.
+    public static String jarOfLoadedClass(String className, Path modsFolder) {
+        if (className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun.")
+                || className.startsWith("net.minecraft.") || className.startsWith("com.mojang.")
+                || className.startsWith("net.fabricmc.loader.")) {
+            return "";
+        }
+        // Nested and generated classes live in their outer class's file
+        int inner = className.indexOf('$');
+        String resource = (inner > 0 ? className.substring(0, inner) : className).replace('.', '/') + ".class";
+        URL url = ModClassIndex.class.getClassLoader().getResource(resource);
+        if (url == null) return "";
+
+        // jar:file:/.../mods/some-mod.jar!/pkg/Class.class; bundled jars resolve to the jar that ships them
+        String location = url.toString();
+        int start = location.indexOf("file:");
+        int end = start < 0 ? -1 : location.indexOf(".jar!/", start);
+        if (end < 0) return "";
+        try {
+            Path jar = Path.of(URI.create(location.substring(start, end + 4))).toAbsolutePath().normalize();
+            return jar.startsWith(modsFolder) ? jar.toString() : "";
+        } catch (IllegalArgumentException | FileSystemNotFoundException e) {
+            return "";
+        }
+    }
+
+    // Path of the jar a loaded mod came from, or "" if it isn't a jar in the mods folder. Mods bundled in
+    // another jar are charged to the outermost jar that ships them.
+    public static String jarOfMod(String modId) {
+        try {
+            // Bounded, in case a broken loader reports a cycle of parents
+            for (int depth = 0; depth < 16 && modId != null; depth++) {
+                Optional<ModContainer> container = FabricLoader.getInstance().getModContainer(modId);
+                if (container.isEmpty()) return "";
+                ModOrigin origin = container.get().getOrigin();
+                if (origin.getKind() == ModOrigin.Kind.PATH) {
+                    List<Path> paths = origin.getPaths();
+                    return paths.isEmpty() ? "" : paths.getFirst().toAbsolutePath().normalize().toString();
+                }
+                if (origin.getKind() != ModOrigin.Kind.NESTED) return "";
+                modId = origin.getParentModId();
+            }
+        } catch (RuntimeException e) {
+            // An origin this loader can't describe shouldn't stop the sampler
+            System.err.println("Could not find the jar of " + modId + ": " + e.getMessage());
+        }
+        return "";
+    }
+
+    private static void indexJar(File file, Map<String, String> packages) {
+        String jarName = keyOf(file);
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.startsWith("META-INF/jars/") && name.endsWith(".jar")) {
+                    // Bundled libraries and modules are charged to the jar that ships them
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        indexNestedJar(in, jarName, packages);
+                    }
+                } else {
+                    addClass(name, jarName, packages);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not index classes of " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static void indexNestedJar(InputStream in, String jarName, Map<String, String> packages) throws IOException {
+        ZipInputStream nested = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = nested.getNextEntry()) != null) {
+            addClass(entry.getName(), jarName, packages);
+        }
+    }
+
+    private static void addClass(String entryName, String jarName, Map<String, String> packages) {
+        if (!entryName.endsWith(".class") || entryName.startsWith("META-INF/")) return;
+        int slash = entryName.lastIndexOf('/');
+        if (slash < 0) return;
+        String pkg = entryName.substring(0, slash).replace('/', '.');
+        String previous = packages.putIfAbsent(pkg, jarName);
+        if (previous != null && !previous.equals(jarName)) packages.put(pkg, AMBIGUOUS);
+    }
+}
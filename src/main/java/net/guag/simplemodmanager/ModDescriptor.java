@@ -0,0 +1,52 @@
+package net.guag.simplemodmanager;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the manager needs to know about one mod or pack archive, read in a
+ * single pass by {@link JarInspector}. Size and last-modified time are kept so
+ * {@link ModMetadataIndex} can tell when the descriptor is stale.
+ */
+public record ModDescriptor(
+        String fileName,
+        long size,
+        long lastModified,
+        Status status,
+        String id,
+        String name,
+        String version,
+        String description,
+        List<String> authors,
+        Map<String, String> depends,
+        Map<String, String> recommends,
+        Map<String, String> breaks,
+        List<String> provides,
+        List<BundledMod> bundled,
+        String iconPath,
+        // pack_format from pack.mcmeta, 0 for mods and packs without one
+        int packFormat
+) {
+    public enum Status { OK, NO_METADATA, INVALID, ERROR }
+
+    // A mod shipped inside this jar under META-INF/jars, at any depth
+    public record BundledMod(String path, String id, String version, List<String> provides) {
+        public BundledMod {
+            provides = provides == null ? List.of() : List.copyOf(provides);
+        }
+    }
+
+    public ModDescriptor {
+        // Older index files and Gson may hand in nulls for empty collections
+        authors = authors == null ? List.of() : List.copyOf(authors);
+        depends = depends == null ? Map.of() : Map.copyOf(depends);
+        recommends = recommends == null ? Map.of() : Map.copyOf(recommends);
+        breaks = breaks == null ? Map.of() : Map.copyOf(breaks);
+        provides = provides == null ? List.of() : List.copyOf(provides);
+        bundled = bundled == null ? List.of() : List.copyOf(bundled);
+    }
+
+    public boolean hasIcon() {
+        return iconPath != null;
+    }
+}
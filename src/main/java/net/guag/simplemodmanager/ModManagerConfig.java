@@ -0,0 +1,56 @@
+package net.guag.simplemodmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+
+/**
+ * User-tunable settings, read from config/simplemodmanager_config.json. Missing
+ * keys keep their defaults and the file is rewritten so new settings show up.
+ */
+public class ModManagerConfig {
+    private static final File CONFIG_FILE = new File(MinecraftClient.getInstance().runDirectory, "config/simplemodmanager_config.json");
+
+    // Memory the shared icon cache may use before the least recently drawn icons are released
+    public int iconCacheBudgetMb = 16;
+    // Icons are decoded at 20px times this, so they stay sharp at larger GUI scales (1-4)
+    public int iconHiDpiMultiplier = 2;
+
+    private static ModManagerConfig instance;
+
+    public static synchronized ModManagerConfig get() {
+        if (instance == null) {
+            instance = load();
+            save();
+        }
+        return instance;
+    }
+
+    private static ModManagerConfig load() {
+        if (!CONFIG_FILE.exists()) return new ModManagerConfig();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(CONFIG_FILE))) {
+            ModManagerConfig config = new Gson().fromJson(reader, ModManagerConfig.class);
+            return config != null ? config : new ModManagerConfig();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ModManagerConfig();
+        }
+    }
+
+    public static synchronized void save() {
+        try {
+            CONFIG_FILE.getParentFile().mkdirs(); // Make sure config dir exists
+            try (FileWriter writer = new FileWriter(CONFIG_FILE)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(instance, writer);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package net.guag.simplemodmanager;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.loader.api.ModContainer;
 import net.minecraft.client.MinecraftClient;
@@ -10,21 +7,25 @@ import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.widget.ButtonWidget;
 import net.minecraft.client.gui.widget.TextFieldWidget;
+import net.minecraft.client.toast.SystemToast;
 import net.minecraft.text.Text;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class ModManagerScreen extends Screen{
     private final MinecraftClient client;
     private final List<ModToggle> modToggles;
     private final List<ModToggle> resourceToggles;
     private final List<ModToggle> shaderToggles;
+    // Inventory the toggle lists were built from; replaced when the folder watcher publishes a new one
+    private InventoryScanner.Snapshot inventory;
 
     DrawingUtils drawUtil = new DrawingUtils();
 
@@ -39,51 +40,251 @@ public class ModManagerScreen extends Screen{
     //Button Info
     int btnHeight = 20;
 
-    private final List<ButtonWidget> modToggleButtons = new ArrayList<>();
     private final List<ButtonWidget> shaderButtons = new ArrayList<>();
     private final List<ButtonWidget> resourceButtons = new ArrayList<>();
-    private final List<ButtonWidget> modResetButtons = new ArrayList<>();
-    private final List<ButtonWidget> modMetadataButtons = new ArrayList<>();
-    private final Map<ButtonWidget, String> tooltipMap = new HashMap<>();
     private final List<ButtonWidget> reloadButtons = new ArrayList<>();
 
-    private final List<ButtonWidget> resourceMetadataButtons = new ArrayList<>();
-    private final List<ButtonWidget> shaderMetadataButtons = new ArrayList<>();
-    private final List<ButtonWidget> resourceToggleButtons = new ArrayList<>();
-    private final List<ButtonWidget> shaderToggleButtons = new ArrayList<>();
-    private final List<ButtonWidget> resourceResetButtons = new ArrayList<>();
-    private final List<ButtonWidget> shaderResetButtons = new ArrayList<>();
-
     private final List<ButtonWidget> headerButtons = new ArrayList<>();
 
-
-    public String getModId(ModToggle mod) {
-        File modFile = mod.getFile();
-
-        if (!modFile.exists()) {
-            // Try the other folder — e.g., if enabled, check disabled, or vice versa
-            File altFile = new File("run/disabled-mods", modFile.getName());
-            if (altFile.exists()) modFile = altFile;
+    private static final Text APPLY_TOOLTIP = Text.literal("Restart the game to apply changes to mod settings.");
+    private List<Text> applyTooltip = List.of(APPLY_TOOLTIP);
+
+    // List layout: rows are 25px apart and the list starts 50px below the top of the screen
+    private static final int ROW_HEIGHT = 25;
+    private static final int LIST_TOP = 50;
+
+    private enum RowKind { HEADER, MOD, RESOURCE, SHADER }
+
+    // One line of the list model. There is one per toggle and header; widgets are only bound to the ones on screen.
+    private static final class ListRow {
+        final RowKind kind;
+        final ModToggle toggle;
+        final int header; // index into headerButtons for HEADER rows
+        Text summary;
+        Text tooltip;
+        // Second tooltip line, the description of a pack
+        Text detail;
+        // Estimated texture memory of a resource pack, and the tooltip line explaining it
+        long textureBytes = -1;
+        String textureLabel;
+        Text textureDetail;
+        // Cost tier of a shader pack and what it was based on
+        ShaderPackAnalyzer.Tier shaderTier;
+        List<Text> shaderDetail = List.of();
+        // Startup time in the latest launch, and the line shown in the tooltip; mods only
+        long startupMs = -1;
+        String startupLabel;
+        Text startupHistory;
+        // Share of busy game thread time while the in-game profiler ran; mods only
+        double cpuShare = 0;
+        String cpuLabel;
+        Text cpuDetail;
+        // Other copies of the same file, or other versions of the same mod
+        List<Text> duplicates = List.of();
+        int y; // position in the scrolled content
+
+        ListRow(RowKind kind, ModToggle toggle, int header) {
+            this.kind = kind;
+            this.toggle = toggle;
+            this.header = header;
         }
+    }
 
-        try (JarFile jar = new JarFile(modFile)) {
-            JarEntry entry = jar.getJarEntry("fabric.mod.json");
-            if (entry == null) return null;
+    // Widgets for one line on screen, rebound to whatever row is at that position after a scroll
+    private final class RowWidgets {
+        final ButtonWidget metadata;
+        final ButtonWidget toggle;
+        final ButtonWidget reset;
+        ListRow bound;
+        IconAtlas.Slot icon;
+        // Row tooltip plus any dependency problems, built when the row is bound
+        List<Text> tooltip;
+        // Value drawn right of the toggles, also picked when the row is bound
+        String columnLabel;
+        int columnColor;
+
+        RowWidgets() {
+            metadata = ButtonWidget.builder(Text.empty(), button -> {} // no action on click
+            ).dimensions(0, 0, 180, btnHeight).build();
+            metadata.active = false;  // disable interaction
+
+            toggle = ButtonWidget.builder(Text.empty(), button -> {
+                if (bound == null) return;
+                // Packs are moved with the mods when the changes are applied
+                ModToggle mod = bound.toggle;
+                mod.toggle();
+                button.setMessage(Text.literal(mod.getButtonText().getString()));
+                if (bound.kind == RowKind.MOD) onModToggled(mod);
+            }).dimensions(0, 0, 60, btnHeight).build();
+
+            reset = ButtonWidget.builder(Text.of("Reset"), button -> {
+                if (bound == null) return;
+                bound.toggle.resetToDefault();
+                toggle.setMessage(Text.literal(bound.toggle.getButtonText().getString()));
+                onModToggled(bound.toggle);
+            }).dimensions(0, 0, 60, btnHeight).build();
+
+            unbind();
+        }
 
-            try (InputStreamReader reader = new InputStreamReader(jar.getInputStream(entry), StandardCharsets.UTF_8)) {
-                JsonElement je = JsonParser.parseReader(reader);
-                if (!je.isJsonObject()) return null;
+        void bind(ListRow row, int y) {
+            bound = row;
+            int centerX = width / 2;
+            int offset = 40;
+            // Pack rows have no reset button, so they sit a little further right
+            int shift = row.kind == RowKind.MOD ? 0 : 30;
+
+            metadata.setX(centerX - 200 + offset + shift);
+            metadata.setY(y);
+            metadata.setMessage(row.summary);
+            metadata.visible = true;
+            tooltip = row.tooltip == null ? null : row.detail == null ? List.of(row.tooltip) : List.of(row.tooltip, row.detail);
+            if (tooltip != null && (row.textureDetail != null || !row.shaderDetail.isEmpty())) {
+                tooltip = new ArrayList<>(tooltip);
+                if (row.textureDetail != null) tooltip.add(row.textureDetail);
+                tooltip.addAll(row.shaderDetail);
+            }
 
-                JsonObject root = je.getAsJsonObject();
+            // Flag mods that won't load (red) or are missing something they recommend (yellow)
+            if (row.kind == RowKind.MOD) {
+                List<DependencyGraph.Problem> problems = dependencies.problemsOf(row.toggle);
+                if (!problems.isEmpty()) {
+                    boolean conflict = dependencies.hasConflict(row.toggle);
+                    metadata.setMessage(Text.literal((conflict ? "§c⚠ §r" : "§e⚠ §r") + row.summary.getString()));
+                    tooltip = new ArrayList<>();
+                    tooltip.add(row.tooltip);
+                    for (DependencyGraph.Problem problem : problems) {
+                        tooltip.add(Text.literal((problem.conflict() ? "§c" : "§e") + problem.message()));
+                    }
+                }
+                if (row.startupHistory != null || row.cpuDetail != null) {
+                    if (tooltip.size() == 1) tooltip = new ArrayList<>(tooltip);
+                    if (row.startupHistory != null) tooltip.add(row.startupHistory);
+                    if (row.cpuDetail != null) tooltip.add(row.cpuDetail);
+                }
+            }
+            if (!row.duplicates.isEmpty()) {
+                tooltip = tooltip == null ? new ArrayList<>() : new ArrayList<>(tooltip);
+                tooltip.addAll(row.duplicates);
+                // Dependency problems keep their own, more urgent flag
+                if (metadata.getMessage() == row.summary) metadata.setMessage(Text.literal("§6⚠ §r" + row.summary.getString()));
+            }
 
-                if (root.has("id")) {
-                    return root.get("id").getAsString();
+            columnLabel = null;
+            if (row.kind == RowKind.SHADER) {
+                if (row.shaderTier != null) {
+                    columnLabel = row.shaderTier.label;
+                    columnColor = row.shaderTier.color;
                 }
+            } else if (row.kind == RowKind.RESOURCE) {
+                columnLabel = row.textureLabel;
+                columnColor = textureColor(row.textureBytes);
+            } else if (sortOrder == SortOrder.CPU) {
+                columnLabel = row.cpuLabel;
+                columnColor = cpuColor(row.cpuShare);
+            } else {
+                columnLabel = row.startupLabel;
+                columnColor = startupColor(row.startupMs);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+
+            toggle.setX(centerX + offset + shift);
+            toggle.setY(y);
+            toggle.setMessage(Text.literal(row.toggle.getButtonText().getString()));
+            toggle.visible = true;
+
+            reset.setX(centerX + 70 + offset);
+            reset.setY(y);
+            reset.visible = row.kind == RowKind.MOD;
         }
-        return null;
+
+        void unbind() {
+            bound = null;
+            icon = null;
+            tooltip = null;
+            columnLabel = null;
+            metadata.visible = false;
+            toggle.visible = false;
+            reset.visible = false;
+        }
+    }
+
+    // Rows for every toggle, created in init(); rows holds the ones matching the search, in display order
+    private final Map<ModToggle, ListRow> rowsByToggle = new HashMap<>();
+    private final List<ListRow> headerRows = new ArrayList<>();
+    private final List<ListRow> rows = new ArrayList<>();
+    private final List<RowWidgets> rowPool = new ArrayList<>();
+    private int footerY = 0;
+    // One search index per category, rebuilt with the rows in init()
+    private final SearchIndex[] searchIndexes = new SearchIndex[3];
+    // Set when the search or metadata changes (rows) or the visible window moves (binding)
+    private boolean rowsDirty = true;
+    private boolean bindingDirty = true;
+
+    // How long init() may wait for cached metadata before the first frame is drawn with placeholders
+    private static final long FIRST_FRAME_BUDGET_MS = 50;
+
+    // Metadata loaded on background threads, applied to the rows on the render thread
+    private final Queue<Runnable> loadedMetadata = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
+
+    // The apply running in the background, if any; the list is locked until it finishes
+    private ApplyTransaction activeBatch = null;
+    // Completion of the active batch. Unlike loadedMetadata it survives init(), which a resize runs mid-apply.
+    private final Queue<Runnable> finishedApplies = new ConcurrentLinkedQueue<>();
+    private ButtonWidget cancelBatchButton;
+    // Lines of the progress overlay
+    private static final int OVERLAY_LINES = 8;
+    private static final ApplyTransaction.Progress.State[] OVERLAY_STATES = {
+            ApplyTransaction.Progress.State.MOVING, ApplyTransaction.Progress.State.WAITING};
+    // Text of the overlay, rebuilt only when a move starts, ends or copies more bytes
+    private String overlayTitle = "";
+    private final String[] overlayLines = new String[OVERLAY_LINES];
+    private int overlayLineCount = 0;
+    private int overlayDone = -1;
+    private int overlayMoving = -1;
+    private long overlayBytes = -1;
+    private boolean overlayCancelled = false;
+
+    // Kept across init() so an inventory refresh only re-reads the jars that changed
+    private final DependencyGraph dependencies = new DependencyGraph();
+    // Offer to toggle the mods a toggle drags along with it; shown above the list
+    private ButtonWidget suggestionButton;
+    private List<String> suggestedFiles = List.of();
+    private boolean suggestedEnable;
+    // Apply has been clicked once with conflicts showing, so the next click goes ahead
+    private boolean warningsConfirmed = false;
+    // The same for a profile switch, whose toggles are put back until the switch is confirmed
+    private boolean switchConfirmed = false;
+    private List<Text> switchTooltip = List.of();
+    // Set while a profile switch is being applied: the profile that becomes active once the files are moved, and
+    // the toggle states to return to if they aren't. Kept across init(), like activeBatch.
+    private String switchingTo = null;
+    private Map<ModToggle, Boolean> statesBeforeSwitch = null;
+
+    // Profile controls under the apply buttons: cycle, switch, delete, then the name field and save
+    private final List<ButtonWidget> profileButtons = new ArrayList<>();
+    private TextFieldWidget profileNameField;
+    private String selectedProfile = ModProfiles.active();
+
+    // Order of the mod list while not searching; the column right of the toggles shows the value sorted by
+    private enum SortOrder { NAME, STARTUP, CPU }
+    private static SortOrder sortOrder = SortOrder.NAME;
+    private ButtonWidget sortButton;
+    private List<Text> sortTooltip = List.of();
+    // Starts and stops the in-game profiler; its shares are refreshed about once a second
+    private ButtonWidget profilerButton;
+    private TickProfiler.Result shownCpu = null;
+    private List<Text> profilerTooltip = List.of();
+    private int ticksSinceCpuRefresh = 0;
+
+
+    public String getModId(ModToggle mod) {
+        return ModMetadataIndex.get(mod).id();
+    }
+
+    public ModManagerScreen(MinecraftClient client, InventoryScanner.Snapshot inventory) {
+        this(client, ModUtils.getModToggles(inventory), ModUtils.getResourceToggles(inventory), ModUtils.getShaderToggles(inventory));
+        this.inventory = inventory;
     }
 
     public ModManagerScreen(MinecraftClient client, List<ModToggle> modToggles, List<ModToggle> resourceToggles, List<ModToggle> shaderToggles) {
@@ -96,10 +297,10 @@ public class ModManagerScreen extends Screen{
 
 
     public String getMetadataSummaryForMod(ModToggle mod) {
-        File modFile = mod.getFile();
+        ModDescriptor metadata = ModMetadataIndex.get(mod);
 
-        String modId = getModId(mod);
-        Optional<ModContainer> containerOpt = FabricLoader.getInstance().getModContainer(modId);
+        String modId = metadata.id();
+        Optional<ModContainer> containerOpt = modId == null ? Optional.empty() : FabricLoader.getInstance().getModContainer(modId);
 
         String modName;
         boolean jarName;
@@ -111,83 +312,51 @@ public class ModManagerScreen extends Screen{
             jarName = true;
         }
 
-        try (JarFile jar = new JarFile(modFile)) {
-            JarEntry entry = jar.getJarEntry("fabric.mod.json");
-            if (entry == null) return "No metadata";
-
-            try (InputStreamReader reader = new InputStreamReader(jar.getInputStream(entry), StandardCharsets.UTF_8)) {
-                JsonElement je = JsonParser.parseReader(reader);
-                if (!je.isJsonObject()) return "Invalid metadata";
-
-                JsonObject root = je.getAsJsonObject();
-
-                // Extract fields
-                String version = root.has("version") ? root.get("version").getAsString() : null;
+        switch (metadata.status()) {
+            case NO_METADATA: return "No metadata";
+            case INVALID: return "Invalid metadata";
+            case ERROR: return "Error reading metadata";
+            default: break;
+        }
 
-                // Compose a summary string (truncate description for brevity)
-                StringBuilder summary = new StringBuilder();
+        // Compose a summary string (truncate description for brevity)
+        StringBuilder summary = new StringBuilder();
 
-                if (jarName){
-                    summary.append(modName);
-                } else if (!jarName) { summary.append(modName + ":");
+        if (jarName){
+            summary.append(modName);
+        } else { summary.append(modName + ":");
 
-                    if (version != null) {
-                        summary.append(" v").append(version);
-                    }
-                }
-                return summary.toString().isEmpty() ? "No metadata" : summary.toString();
+            if (metadata.version() != null) {
+                summary.append(" v").append(metadata.version());
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            return "Error reading metadata";
         }
+        return summary.toString().isEmpty() ? "No metadata" : summary.toString();
     }
 
     public String getExtraInfo(ModToggle mod) {
-        File modFile = mod.getFile();
-        String modName;
-        modName = mod.getJarName(); // fallback to jar name (this is because tooltip needs full file)
-
-        try (JarFile jar = new JarFile(modFile)) {
-            JarEntry entry = jar.getJarEntry("fabric.mod.json");
-            if (entry == null) return "No metadata";
-
-            try (InputStreamReader reader = new InputStreamReader(jar.getInputStream(entry), StandardCharsets.UTF_8)) {
-                JsonElement je = JsonParser.parseReader(reader);
-                if (!je.isJsonObject()) return "Invalid metadata";
-
-                JsonObject root = je.getAsJsonObject();
-
-                // Extract fields
-                String version = root.has("version") ? root.get("version").getAsString() : null;
-                // Authors can be array or string, handle both
-                String authors = null;
-                if (root.has("authors")) {
-                    if (root.get("authors").isJsonArray()) {
-                        authors = root.get("authors").getAsJsonArray().toString();
-                    } else {
-                        authors = root.get("authors").getAsString();
-                    }
-                }
-
-                // Compose a summary string (truncate description for brevity)
-                StringBuilder extraSummary = new StringBuilder();
+        ModDescriptor metadata = ModMetadataIndex.get(mod);
+        String modName = mod.getJarName(); // fallback to jar name (this is because tooltip needs full file)
+
+        switch (metadata.status()) {
+            case NO_METADATA: return "No metadata";
+            case INVALID: return "Invalid metadata";
+            case ERROR: return "Error reading metadata";
+            default: break;
+        }
 
-                extraSummary.append(modName + ":");
+        // Compose a summary string (truncate description for brevity)
+        StringBuilder extraSummary = new StringBuilder();
 
-                if (version != null) {
-                    extraSummary.append(" v").append(version);
-                }
-                if (authors != null) {
-                    extraSummary.append(" by ").append(authors);
-                }
+        extraSummary.append(modName + ":");
 
-                return extraSummary.toString().isEmpty() ? "No metadata" : extraSummary.toString();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            return "Error reading metadata";
+        if (metadata.version() != null) {
+            extraSummary.append(" v").append(metadata.version());
+        }
+        if (!metadata.authors().isEmpty()) {
+            extraSummary.append(" by ").append(String.join(", ", metadata.authors()));
         }
+
+        return extraSummary.toString();
     }
 
     protected  void fillScreen(DrawContext context){
@@ -196,353 +365,980 @@ public class ModManagerScreen extends Screen{
 
     @Override
     protected void init() {
-        ResourceUtils resourceUtil = new ResourceUtils(client);
-        this.modToggleButtons.clear();
         this.shaderButtons.clear();
         this.resourceButtons.clear();
-
-        this.modResetButtons.clear();
-        this.shaderResetButtons.clear();
-        this.resourceResetButtons.clear();
         this.headerButtons.clear();
 
+        // init() also runs on resize and inventory refresh, so drop the widgets of the previous layout
+        this.reloadButtons.clear();
+        this.profileButtons.clear();
+        this.warningsConfirmed = false;
+        this.applyTooltip = List.of(APPLY_TOOLTIP);
+        this.switchConfirmed = false;
+        this.rowPool.clear();
+        this.rowsByToggle.clear();
+        this.headerRows.clear();
+        this.rows.clear();
+        this.loadedMetadata.clear();
+        this.rowsDirty = true;
+        this.bindingDirty = true;
+        AllocationProbe.reset();
+
         this.clearChildren();
 
         int centerX = this.width / 2;
-        int buttonWidth = 40;
-        int buttonHeight = 20;
-        int spacing = 25;
-        int y = 10;
-
-        // --- Mods ---
-
 
         this.searchBox = new TextFieldWidget(this.textRenderer, 0, 0, this.width, 20, Text.of("Search"));
         this.searchBox.setChangedListener(query -> {
             this.searchQuery = query.toLowerCase();
-            // Don't call updateVisibleButtons here, let render() handle it
+            // The matching rows only change with the query, so search once per keystroke rather than every frame
+            this.rowsDirty = true;
         });
         this.searchBox.setMaxLength(100);
+        this.searchBox.setText(searchQuery); // keep the query when the screen is rebuilt
         this.searchBox.setEditable(true);
         this.addSelectableChild(this.searchBox);
         this.setInitialFocus(this.searchBox);
 
         ModToggle.initializeDefaultDisabledMods();
 
-        int index = 0;
-
-        ButtonWidget modsHeader = ButtonWidget.builder(Text.of("Mods"),
-                button -> {} // Do Nothing
-        ).dimensions(centerX, this.height - 50, 240, 20).build();
+        //Index 0 = mods, index 1  = resource packs, index 2 = shader packs (headers), 3 = apply, 4 = cancel
+        String[] headerNames = {"Mods", "Resource Packs", "Shader Packs"};
+        for (int h = 0; h < headerNames.length; h++) {
+            ButtonWidget header = ButtonWidget.builder(Text.of(headerNames[h]),
+                    button -> {} // Do Nothing
+            ).dimensions(centerX - 120, this.height - 50, 240, 20).build();
+
+            header.active = false;  // Disable interaction
+            header.visible = false;
+            headerButtons.add(header);
+            addDrawableChild(header);
+            headerRows.add(new ListRow(RowKind.HEADER, null, h));
+        }
 
-        modsHeader.active = false;  // Disable interaction
-        headerButtons.add(modsHeader);
-        addDrawableChild(modsHeader);
+        sortButton = ButtonWidget.builder(sortLabel(), button -> {
+            sortOrder = SortOrder.values()[(sortOrder.ordinal() + 1) % SortOrder.values().length];
+            button.setMessage(sortLabel());
+            rowsDirty = true;
+        }).dimensions(centerX + 125, 0, 75, btnHeight).build();
+        sortButton.visible = false;
+        sortTooltip = startupSummary();
+        addDrawableChild(sortButton);
+
+        profilerButton = ButtonWidget.builder(profilerLabel(), button -> {
+            if (TickProfiler.isRunning()) {
+                TickProfiler.stop();
+            } else {
+                TickProfiler.start();
+                sortOrder = SortOrder.CPU;
+                sortButton.setMessage(sortLabel());
+                rowsDirty = true;
+            }
+            button.setMessage(profilerLabel());
+            profilerTooltip = profilerTooltip();
+        }).dimensions(centerX - 200, 0, 75, btnHeight).build();
+        profilerButton.visible = false;
+        profilerTooltip = profilerTooltip();
+        addDrawableChild(profilerButton);
+        shownCpu = null;
+
+        searchIndexes[0] = new SearchIndex(modToggles);
+        searchIndexes[1] = new SearchIndex(resourceToggles);
+        searchIndexes[2] = new SearchIndex(shaderToggles);
+
+        // Only enough widgets to fill the viewport; they are rebound as the list scrolls
+        int poolSize = this.height / ROW_HEIGHT + 2;
+        for (int i = 0; i < poolSize; i++) {
+            RowWidgets row = new RowWidgets();
+            addDrawableChild(row.metadata);
+            addDrawableChild(row.toggle);
+            addDrawableChild(row.reset);
+            rowPool.add(row);
+        }
 
+        // Rows start with just the name; mod summaries and tooltips are filled in as the jars are read
+        List<CompletableFuture<Void>> metadataLoads = new ArrayList<>();
         for (ModToggle toggle : modToggles) {
-            String name = cleanName(toggle.getFile().getName());
+            ListRow row = new ListRow(RowKind.MOD, toggle, -1);
+            row.summary = Text.literal(toggle.getDisplayName());
+            row.tooltip = Text.literal(toggle.getJarName());
+            setStartupInfo(row);
+            setCpuInfo(row, TickProfiler.result());
+            rowsByToggle.put(toggle, row);
+
+            metadataLoads.add(CompletableFuture.runAsync(() -> {
+                if (closed) return;
+                String summary = getMetadataSummaryForMod(toggle);
+                String extraInfo = getExtraInfo(toggle);
+                loadedMetadata.add(() -> {
+                    row.summary = Text.literal(summary);
+                    row.tooltip = Text.literal(extraInfo);
+                    bindingDirty = true;
+                });
+            }, BackgroundTasks.EXECUTOR));
+        }
+        // Texture estimates and shader analyses can take a while for big packs, so they don't hold up the search index
+        List<CompletableFuture<Void>> packCostLoads = new ArrayList<>();
+        for (ModToggle toggle : resourceToggles) {
+            metadataLoads.add(addPackRow(RowKind.RESOURCE, toggle));
+            packCostLoads.add(estimateTextures(rowsByToggle.get(toggle)));
+        }
+        for (ModToggle toggle : shaderToggles) {
+            metadataLoads.add(addPackRow(RowKind.SHADER, toggle));
+            packCostLoads.add(analyzeShaderPack(rowsByToggle.get(toggle)));
+        }
+
+        ButtonWidget resourceFunc = ButtonWidget.builder(Text.of("Refresh Resources"), b -> {
+            ResourceUtils.refresh(client);
+            client.setScreen(null);
+        }).dimensions(centerX - 120, 0, 240, btnHeight).build();
+        reloadButtons.add(resourceFunc);
+        addDrawableChild(resourceFunc);
 
-            ButtonWidget toggleFunc = ButtonWidget.builder(Text.literal(toggle.getButtonText().getString()), button -> {
-                toggle.toggle();
-                button.setMessage(Text.literal(toggle.getButtonText().getString()));
-            }).dimensions(centerX + 10, y, buttonWidth+20, buttonHeight).build();
-            addDrawableChild(toggleFunc);
-            modToggleButtons.add(toggleFunc);
+        ButtonWidget applyFunc = ButtonWidget.builder(Text.of("Apply Changes"), button -> {
+            startApply();
+        }).dimensions(centerX - 130, 10, 120, 20).build();
+        headerButtons.add(applyFunc);
+        addDrawableChild(applyFunc);
 
-            ButtonWidget resetFunc = ButtonWidget.builder(Text.of("Reset"), button -> {
-                toggle.resetToDefault();
-                // Optionally update toggle button text here if needed
-            }).dimensions(centerX + 110, y, 60, buttonHeight).build();
+        ButtonWidget cancelFunc = ButtonWidget.builder(Text.of("Cancel"), button -> {
+            client.setScreen(null);
+        }).dimensions(centerX + 10, 10, 120, 20).build();
+        headerButtons.add(cancelFunc);
+        addDrawableChild(cancelFunc);
 
-            addDrawableChild(resetFunc);
-            modResetButtons.add(resetFunc);
+        ButtonWidget profileCycle = ButtonWidget.builder(profileLabel(), button -> {
+            List<String> names = ModProfiles.names();
+            if (names.isEmpty()) return;
+            int next = (names.indexOf(selectedProfile) + 1) % names.size();
+            selectedProfile = names.get(next);
+            profileNameField.setText(selectedProfile);
+            button.setMessage(profileLabel());
+            resetApplyConfirmation();
+        }).dimensions(centerX - 120, 0, 120, btnHeight).build();
+        profileButtons.add(profileCycle);
+
+        profileButtons.add(ButtonWidget.builder(Text.of("Switch"), button -> switchProfile())
+                .dimensions(centerX, 0, 60, btnHeight).build());
+
+        profileButtons.add(ButtonWidget.builder(Text.of("Delete"), button -> {
+            if (selectedProfile == null) return;
+            ModProfiles.delete(selectedProfile);
+            selectedProfile = null;
+            profileCycle.setMessage(profileLabel());
+        }).dimensions(centerX + 60, 0, 60, btnHeight).build());
+
+        profileNameField = new TextFieldWidget(this.textRenderer, centerX - 120, 0, 176, btnHeight, Text.of("Profile name"));
+        profileNameField.setMaxLength(40);
+        profileNameField.setPlaceholder(Text.of("Profile name"));
+        if (selectedProfile != null) profileNameField.setText(selectedProfile);
+
+        profileButtons.add(ButtonWidget.builder(Text.of("Save"), button -> {
+            String name = profileNameField.getText().trim();
+            if (name.isEmpty()) return;
+            ModProfiles.capture(name, togglesByCategory());
+            selectedProfile = name;
+            profileCycle.setMessage(profileLabel());
+        }).dimensions(centerX + 60, 0, 60, btnHeight).build());
+
+        for (ButtonWidget button : profileButtons) addDrawableChild(button);
+        addDrawableChild(profileNameField);
+
+        suggestionButton = ButtonWidget.builder(Text.empty(), button -> acceptSuggestion())
+                .dimensions(centerX - 150, 26, 300, btnHeight).build();
+        suggestionButton.visible = !suggestedFiles.isEmpty();
+        addDrawableChild(suggestionButton);
+        updateSuggestion(suggestedFiles, suggestedEnable);
+
+        // Drawn on top of the progress overlay rather than with the other widgets
+        cancelBatchButton = ButtonWidget.builder(Text.of("Cancel"), button -> {
+            if (activeBatch != null) activeBatch.cancel();
+        }).dimensions(centerX - 60, 0, 120, 20).build();
+        addSelectableChild(cancelBatchButton);
+
+        // Persist anything that had to be re-read from the jars once every load has finished
+        List<File> indexedFiles = new ArrayList<>();
+        for (ModToggle toggle : modToggles) indexedFiles.add(toggle.getFile());
+        for (ModToggle toggle : resourceToggles) indexedFiles.add(toggle.getFile());
+        for (ModToggle toggle : shaderToggles) indexedFiles.add(toggle.getFile());
+        CompletableFuture<Void> allLoads = CompletableFuture.allOf(metadataLoads.toArray(new CompletableFuture[0]));
+        List<ModToggle> allToggles = new ArrayList<>(modToggles);
+        allToggles.addAll(resourceToggles);
+        allToggles.addAll(shaderToggles);
+        allLoads.thenRunAsync(() -> {
+            // Only files added or changed since the last screen are re-indexed
+            MetadataSearchIndex.update(allToggles);
+            // An open search may now match more (or fewer) rows, and every descriptor is now in memory
+            loadedMetadata.add(() -> {
+                rowsDirty = true;
+                dependencies.sync(modToggles);
+            });
+            ModMetadataIndex.retainOnly(indexedFiles);
+            ModMetadataIndex.save();
+        }, BackgroundTasks.EXECUTOR);
+        // Hashing needs the mod ids from the metadata loads; only new or changed files are read
+        Map<InventoryScanner.Category, List<ModToggle>> categories = togglesByCategory();
+        allLoads.thenRunAsync(() -> {
+            if (closed) return;
+            Map<ModToggle, List<String>> duplicates = DuplicateFinder.find(categories, ContentHashes.hashAll(allToggles));
+            loadedMetadata.add(() -> {
+                for (Map.Entry<ModToggle, List<String>> entry : duplicates.entrySet()) {
+                    ListRow row = rowsByToggle.get(entry.getKey());
+                    if (row == null) continue;
+                    List<Text> lines = new ArrayList<>();
+                    for (String line : entry.getValue()) lines.add(Text.literal("§6" + line));
+                    row.duplicates = lines;
+                }
+                bindingDirty = true;
+            });
+            ContentHashes.retainOnly(allToggles);
+            ContentHashes.save();
+        }, BackgroundTasks.EXECUTOR);
+        CompletableFuture.allOf(packCostLoads.toArray(new CompletableFuture[0])).thenRunAsync(() -> {
+            TextureCostEstimator.retainOnly(indexedFiles);
+            TextureCostEstimator.save();
+            ShaderPackAnalyzer.retainOnly(indexedFiles);
+            ShaderPackAnalyzer.save();
+        }, BackgroundTasks.EXECUTOR);
+
+        // Cached entries come back almost immediately, so give them a short, bounded chance to make the first frame
+        try {
+            allLoads.get(FIRST_FRAME_BUDGET_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The rest show up on later frames
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        applyLoadedMetadata();
+        rebuildRows();
+        bindVisibleRows();
+    }
 
-            // Metadata button (left column)
-            ButtonWidget metadataFunc = ButtonWidget.builder(
-                    Text.literal(getMetadataSummaryForMod(modToggles.get(index))),
-                    button -> {} // no action on click
-            ).dimensions(centerX, y, 180, buttonHeight).build();
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        // The screen's own per-frame work happens in layoutFrame() and hoveredTooltip() and must not allocate in
+        // steady state; everything else only hands prepared positions, strings and lists to vanilla drawing
+        long allocatedBefore = AllocationProbe.begin();
+        layoutFrame();
+        AllocationProbe.end(allocatedBefore);
 
-            metadataFunc.active = false;  // disable interaction
-            addDrawableChild(metadataFunc); // add to screen
-            modMetadataButtons.add(metadataFunc); // keep track of it
+        context.fill(0, 0, this.width, this.height, 0xFF202020);
 
-            // keep track of it
+        // Draws the headers, the pooled row widgets and the footer buttons, each exactly once
+        super.render(context, mouseX, mouseY, delta);
 
+        int iconX = this.width / 2 - 200;
+        // Right of the reset button
+        int columnX = this.width / 2 + 175;
+        for (int i = 0; i < rowPool.size(); i++) {
+            RowWidgets row = rowPool.get(i);
+            if (row.bound == null) continue;
 
+            drawUtil.renderModIcon(row.icon, context, iconX, row.metadata.getY(), 20);
+            if (row.columnLabel != null) {
+                context.drawTextWithShadow(this.textRenderer, row.columnLabel, columnX, row.metadata.getY() + 6, row.columnColor);
+            }
+        }
 
-            String extraInfo = getExtraInfo(modToggles.get(index));
+        // Hover state is only known once the widgets have been drawn
+        allocatedBefore = AllocationProbe.begin();
+        List<Text> tooltip = hoveredTooltip();
+        AllocationProbe.end(allocatedBefore);
+        AllocationProbe.endFrame();
 
-            // Store the tooltip string for later
-            tooltipMap.put(metadataFunc, extraInfo);// tooltipMap is a Map<ButtonWidget, String>
+        context.fillGradient(0, 20, this.width, 30, 0xC0000000, 0x00000000);
+        context.fillGradient(0, this.height-10, this.width, this.height, 0x00000000, 0xC0000000);
+        this.searchBox.render(context, mouseX, mouseY, delta);
 
-            y += spacing;
-            index += 1;
+        if (activeBatch != null) {
+            renderApplyProgress(context, mouseX, mouseY, delta);
+            return;
         }
 
-        index = 0;
-        //Index 3 = mods, index 4  = resource packs, index 5 = shader packs
+        if (tooltip != null) {
+            context.drawTooltip(MinecraftClient.getInstance().textRenderer, tooltip, mouseX, mouseY);
+        }
+    }
 
-        ButtonWidget resourceHeader = ButtonWidget.builder(Text.of("Resource Packs"),
-                button -> {} // Do Nothing
-        ).dimensions(centerX, this.height - 50, 240, 20).build();
+    // Show only one tooltip at a time: the hovered row's, or that of a hovered button with one.
+    private List<Text> hoveredTooltip() {
+        if (headerButtons.get(3).isHovered()) return applyTooltip;
+        if (switchConfirmed && profileButtons.get(1).isHovered()) return switchTooltip;
+        if (sortButton.visible && sortButton.isHovered()) return sortTooltip;
+        if (profilerButton.visible && profilerButton.isHovered()) return profilerTooltip;
+        for (int i = 0; i < rowPool.size(); i++) {
+            RowWidgets row = rowPool.get(i);
+            if (row.bound != null && row.metadata.isHovered()) return row.tooltip;
+        }
+        return null;
+    }
 
-        resourceHeader.active = false;  // Disable interaction
-        headerButtons.add(resourceHeader);
-        addDrawableChild(resourceHeader);
+    // Dims the screen and lists the moves still in progress, with a button to cancel the batch.
+    private void renderApplyProgress(DrawContext context, int mouseX, int mouseY, float delta) {
+        context.fill(0, 0, this.width, this.height, 0xC0000000);
+        int centerX = this.width / 2;
+        int y = this.height / 2 - (OVERLAY_LINES + 3) * 6;
 
-        for (ModToggle toggle : resourceToggles) {
-            ButtonWidget resourceMetadataFunc = ButtonWidget.builder(
-                    Text.literal(resourceToggles.get(index).getFile().getName()),
-                    button -> {
-                    } // no action on click
-            ).dimensions(centerX, y, 180, buttonHeight).build();
+        context.drawCenteredTextWithShadow(this.textRenderer, overlayTitle, centerX, y, 0xFFFFFFFF);
+        y += 16;
+        for (int i = 0; i < overlayLineCount; i++) {
+            context.drawCenteredTextWithShadow(this.textRenderer, overlayLines[i], centerX, y, 0xFFAAAAAA);
+            y += 12;
+        }
+
+        cancelBatchButton.setX(centerX - 60);
+        cancelBatchButton.setY(y + 8);
+        cancelBatchButton.active = !activeBatch.isCancelled();
+        cancelBatchButton.render(context, mouseX, mouseY, delta);
+    }
 
-            resourceMetadataFunc.active = false;  // disable interaction
-            addDrawableChild(resourceMetadataFunc); // add to screen
-            resourceMetadataButtons.add(resourceMetadataFunc); // keep track of it
+    // Rebuilds the overlay's title and lines when the counts of finished and running moves or the bytes copied
+    // changed since the last frame; a stalled or waiting batch builds no strings.
+    private void updateApplyOverlay() {
+        List<ApplyTransaction.Progress> progress = activeBatch.getProgress();
+        int done = 0;
+        int moving = 0;
+        long bytes = 0;
+        for (int i = 0; i < progress.size(); i++) {
+            ApplyTransaction.Progress move = progress.get(i);
+            if (move.state == ApplyTransaction.Progress.State.DONE) done++;
+            else if (move.state == ApplyTransaction.Progress.State.MOVING) moving++;
+            bytes += move.bytes.get();
+        }
+        boolean cancelled = activeBatch.isCancelled();
+        if (done == overlayDone && moving == overlayMoving && bytes == overlayBytes && cancelled == overlayCancelled) return;
+        overlayDone = done;
+        overlayMoving = moving;
+        overlayBytes = bytes;
+        overlayCancelled = cancelled;
+
+        overlayTitle = cancelled ? "Cancelling..." : "Applying changes (" + done + "/" + progress.size() + ")";
+        // Moves that are running come first, then the ones still waiting
+        overlayLineCount = 0;
+        for (ApplyTransaction.Progress.State state : OVERLAY_STATES) {
+            for (int i = 0; i < progress.size() && overlayLineCount < OVERLAY_LINES; i++) {
+                ApplyTransaction.Progress move = progress.get(i);
+                if (move.state != state) continue;
+                String status = state == ApplyTransaction.Progress.State.WAITING ? "waiting"
+                        : move.totalBytes > 0 ? (move.bytes.get() * 100 / move.totalBytes) + "%" : "moving";
+                overlayLines[overlayLineCount++] = move.name + "  " + status;
+            }
+        }
+    }
 
-            ButtonWidget resourceToggleFunc = ButtonWidget.builder(Text.literal(toggle.getButtonText().getString()), button -> {
-                toggle.toggle();
-                resourceUtil.toggleResourcePack(toggle.getFile().getName(), toggle.isEnabled());
-                button.setMessage(Text.literal(toggle.getButtonText().getString()));
-            }).dimensions(centerX + 10, y, buttonWidth + 20, buttonHeight).build();
-            addDrawableChild(resourceToggleFunc);
-            resourceToggleButtons.add(resourceToggleFunc);
+    private static Text sortLabel() {
+        return Text.of(switch (sortOrder) {
+            case NAME -> "Sort: A-Z";
+            case STARTUP -> "Sort: Startup";
+            case CPU -> "Sort: CPU";
+        });
+    }
 
+    private static Text profilerLabel() {
+        return Text.of(TickProfiler.isRunning() ? "§aProfiling" : "Profile");
+    }
 
-            y += spacing;
-            index += 1;
+    private static List<Text> profilerTooltip() {
+        TickProfiler.Result result = TickProfiler.result();
+        List<Text> lines = new ArrayList<>();
+        lines.add(Text.literal(TickProfiler.isRunning() ? "Click to stop profiling." : "Click to measure which mods use the most CPU time while playing."));
+        if (result.clientSamples() + result.serverSamples() > 0) {
+            lines.add(Text.literal("§7Busy samples: " + result.clientSamples() + " render thread, " + result.serverSamples() + " server thread"));
         }
+        lines.add(Text.literal("§7The server thread is only sampled in singleplayer."));
+        return lines;
+    }
 
-        index = 0;
+    // Fills in the CPU column of a mod row from the profiler's shares.
+    private static void setCpuInfo(ListRow row, TickProfiler.Result result) {
+        if (result.clientSamples() + result.serverSamples() == 0) {
+            row.cpuShare = 0;
+            row.cpuLabel = null;
+            row.cpuDetail = null;
+            return;
+        }
+        String jar = ModClassIndex.keyOf(row.toggle.getFile());
+        row.cpuShare = result.share(jar);
+        row.cpuLabel = String.format("%.1f%%", row.cpuShare);
+        row.cpuDetail = Text.literal(String.format("§7CPU: %.1f%% of the render thread, %.1f%% of the server thread",
+                result.clientShare().getOrDefault(jar, 0.0), result.serverShare().getOrDefault(jar, 0.0)));
+    }
 
-        ButtonWidget shaderHeader = ButtonWidget.builder(Text.of("Shader Packs"),
-                button -> {} // Do Nothing
-        ).dimensions(centerX, this.height - 50, 240, 20).build();
+    private static int cpuColor(double share) {
+        if (share >= 10) return 0xFFFF5555;
+        if (share >= 2) return 0xFFFFFF55;
+        return 0xFFAAAAAA;
+    }
 
-        shaderHeader.active = false;  // Disable interaction
-        headerButtons.add(shaderHeader);
-        addDrawableChild(shaderHeader);
+    // Picks up new profiler samples; called from tick(), so the shares update about once a second.
+    private void refreshCpuShares() {
+        TickProfiler.Result result = TickProfiler.result();
+        if (result == shownCpu) return;
+        shownCpu = result;
+        for (ModToggle toggle : modToggles) {
+            ListRow row = rowsByToggle.get(toggle);
+            if (row != null) setCpuInfo(row, result);
+        }
+        if (sortOrder == SortOrder.CPU) rowsDirty = true; else bindingDirty = true;
+        profilerButton.setMessage(profilerLabel());
+        profilerTooltip = profilerTooltip();
+    }
 
-        for (ModToggle toggle : shaderToggles) {
-            ButtonWidget shaderMetadataFunc = ButtonWidget.builder(
-                    Text.literal(shaderToggles.get(index).getFile().getName()),
-                    button -> {
-                    } // no action on click
-            ).dimensions(centerX, y, 180, buttonHeight).build();
+    // Fills in the startup column of a mod row from the recorded launches.
+    private static void setStartupInfo(ListRow row) {
+        String jar = ModClassIndex.keyOf(row.toggle.getFile());
+        row.startupMs = StartupProfiler.latestMs(jar);
+        if (row.startupMs < 0) return;
+        row.startupLabel = row.startupMs + " ms";
+
+        // Newest first; a disabled mod shows 0 for the launches it sat out
+        StringBuilder history = new StringBuilder("Startup: ");
+        List<Long> launches = StartupProfiler.historyMs(jar);
+        for (int i = 0; i < launches.size(); i++) {
+            if (i > 0) history.append(", ");
+            history.append(launches.get(i)).append(" ms");
+        }
+        if (launches.size() > 1) history.append(" (newest first)");
+        row.startupHistory = Text.literal("§7" + history);
+    }
 
-            shaderMetadataFunc.active = false;  // disable interaction
-            addDrawableChild(shaderMetadataFunc); // add to screen
-            shaderMetadataButtons.add(shaderMetadataFunc); // keep track of it
+    private static int startupColor(long ms) {
+        if (ms >= 1000) return 0xFFFF5555;
+        if (ms >= 250) return 0xFFFFFF55;
+        return 0xFFAAAAAA;
+    }
 
-            ButtonWidget shaderToggleFunc = ButtonWidget.builder(Text.literal(toggle.getButtonText().getString()), button -> {
-                toggle.toggle();
-                resourceUtil.toggleShaderPack(toggle.getFile().getName(), toggle.isEnabled());
-                button.setMessage(Text.literal(toggle.getButtonText().getString()));
-            }).dimensions(centerX + 10, y, buttonWidth + 20, buttonHeight).build();
-            addDrawableChild(shaderToggleFunc);
-            shaderToggleButtons.add(shaderToggleFunc);
+    // Total time of the last launch and the part no single mod can be blamed for.
+    private static List<Text> startupSummary() {
+        List<StartupProfiler.Launch> launches = StartupProfiler.history();
+        if (launches.isEmpty()) {
+            return List.of(Text.literal("No startup recorded yet; restart the game to measure it."));
+        }
+        StartupProfiler.Launch last = launches.getFirst();
+        List<Text> lines = new ArrayList<>();
+        lines.add(Text.literal("Last startup: " + last.totalMs() + " ms"));
+        lines.add(Text.literal("§7Applying mixins: " + last.jarMs().getOrDefault(StartupProfiler.MIXIN_BUCKET, 0L) + " ms"));
+        lines.add(Text.literal("§7Minecraft and libraries: " + last.jarMs().getOrDefault(StartupProfiler.OTHER_BUCKET, 0L) + " ms"));
+        if (launches.size() > 1) {
+            StringBuilder totals = new StringBuilder("§7Earlier: ");
+            for (int i = 1; i < launches.size(); i++) {
+                if (i > 1) totals.append(", ");
+                totals.append(launches.get(i).totalMs()).append(" ms");
+            }
+            lines.add(Text.literal(totals.toString()));
+        }
+        lines.add(Text.literal("§7Times are estimated by sampling the startup thread."));
+        return lines;
+    }
 
+    // Adds a pack row showing the file name until its pack.mcmeta has been read in the background.
+    private CompletableFuture<Void> addPackRow(RowKind kind, ModToggle toggle) {
+        ListRow row = new ListRow(kind, toggle, -1);
+        row.summary = Text.literal(toggle.getFile().getName());
+        rowsByToggle.put(toggle, row);
+
+        return CompletableFuture.runAsync(() -> {
+            if (closed) return;
+            ModDescriptor metadata = ModMetadataIndex.get(toggle);
+            Text summary = Text.literal(cleanName(toggle.getFile().getName()));
+            Text tooltip = Text.literal(getPackInfo(toggle, metadata));
+            String description = metadata.description();
+            Text detail = description == null || description.isEmpty() ? null : Text.literal("§7" + description);
+            loadedMetadata.add(() -> {
+                row.summary = summary;
+                row.tooltip = tooltip;
+                row.detail = detail;
+                bindingDirty = true;
+            });
+        }, BackgroundTasks.EXECUTOR);
+    }
 
-            y += spacing;
-            index += 1;
-        }
+    // Measures a resource pack's textures in the background; large packs take a moment the first time.
+    private CompletableFuture<Void> estimateTextures(ListRow row) {
+        return CompletableFuture.runAsync(() -> {
+            if (closed) return;
+            TextureCostEstimator.Estimate estimate = TextureCostEstimator.get(row.toggle);
+            if (estimate.size() < 0) return;
+            String label = formatBytes(estimate.bytes());
+            Text detail = Text.literal("§7" + estimate.textures() + " textures, about " + label + " of texture memory"
+                    + (estimate.largestSide() > 0 ? ", largest " + estimate.largestSide() + "px" : ""));
+            loadedMetadata.add(() -> {
+                row.textureBytes = estimate.bytes();
+                row.textureLabel = label;
+                row.textureDetail = detail;
+                bindingDirty = true;
+            });
+        }, BackgroundTasks.EXECUTOR);
+    }
 
-        ButtonWidget resourceFunc = ButtonWidget.builder(Text.of("Refresh Resources"), b -> {
-            MinecraftClient.getInstance().reloadResources();
-            client.setScreen(null);
-        }).dimensions(centerX, y, 240, btnHeight).build();
-        reloadButtons.add(resourceFunc);
-        addDrawableChild(resourceFunc);
+    // Works out a shader pack's passes, shadow map and features in the background.
+    private CompletableFuture<Void> analyzeShaderPack(ListRow row) {
+        return CompletableFuture.runAsync(() -> {
+            if (closed) return;
+            ShaderPackAnalyzer.Analysis analysis = ShaderPackAnalyzer.get(row.toggle);
+            if (analysis == null || analysis.tier() == null) return;
+
+            List<Text> detail = new ArrayList<>();
+            detail.add(Text.literal("§7Estimated cost: " + analysis.tier().label));
+            detail.add(Text.literal("§7" + analysis.compositePasses() + " composite and " + analysis.deferredPasses() + " deferred passes"
+                    + (analysis.shadowMapResolution() > 0 ? ", " + analysis.shadowMapResolution() + "px shadow map" : ", no shadows")));
+            if (!analysis.features().isEmpty()) {
+                detail.add(Text.literal("§7Uses " + String.join(", ", analysis.features())));
+            }
+            loadedMetadata.add(() -> {
+                row.shaderTier = analysis.tier();
+                row.shaderDetail = detail;
+                bindingDirty = true;
+            });
+        }, BackgroundTasks.EXECUTOR);
+    }
 
-        int contentHeight = y + 20;
-        int buttonY = this.height - 50;
+    private static String formatBytes(long bytes) {
+        if (bytes >= 1024L * 1024 * 1024) return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+        return Math.max(0, (bytes + 512 * 1024) / (1024 * 1024)) + " MB";
+    }
 
-        ButtonWidget applyFunc = ButtonWidget.builder(Text.of("Apply Changes"), button -> {
-            for (ModToggle toggle : modToggles) toggle.applyChange();
-            MinecraftClient.getInstance().reloadResources();
-        }).dimensions(centerX - 130, 10, 120, 20).build();
-        headerButtons.add(applyFunc);
-        addDrawableChild(applyFunc);
+    private static int textureColor(long bytes) {
+        if (bytes >= 1024L * 1024 * 1024) return 0xFFFF5555;
+        if (bytes >= 256L * 1024 * 1024) return 0xFFFFFF55;
+        return 0xFFAAAAAA;
+    }
 
-        ButtonWidget cancelFunc = ButtonWidget.builder(Text.of("Cancel"), button -> {
-            client.setScreen(null);
-        }).dimensions(centerX + 10, 10, 120, 20).build();
-        headerButtons.add(cancelFunc);
-        addDrawableChild(cancelFunc);
+    public String getPackInfo(ModToggle pack, ModDescriptor metadata) {
+        if (metadata.status() == ModDescriptor.Status.ERROR) return "Error reading " + pack.getFile().getName();
 
-        tooltipMap.put(applyFunc, "Restart the game to apply changes to mod settings.");
-        maxScroll = Math.max(0, contentHeight+200 /** change content height to scroll less/more on screen**/ - (this.height - 80));
+        StringBuilder info = new StringBuilder(pack.getFile().getName());
+        if (metadata.packFormat() > 0) {
+            info.append(" (pack format ").append(metadata.packFormat()).append(")");
+        }
+        return info.toString();
+    }
 
+    private Map<InventoryScanner.Category, List<ModToggle>> togglesByCategory() {
+        Map<InventoryScanner.Category, List<ModToggle>> toggles = new EnumMap<>(InventoryScanner.Category.class);
+        toggles.put(InventoryScanner.Category.MODS, modToggles);
+        toggles.put(InventoryScanner.Category.RESOURCEPACKS, resourceToggles);
+        toggles.put(InventoryScanner.Category.SHADERPACKS, shaderToggles);
+        return toggles;
     }
 
-    @Override
-    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
-        //Index 3 = mods, index 4  = resource packs, index 5 = shader packs (headers)
-        context.fill(0, 0, this.width, this.height, 0xFF202020);
+    private Text profileLabel() {
+        return Text.of("Profile: " + (selectedProfile == null ? "none" : selectedProfile));
+    }
 
-        // First, hide all buttons that don't match search
-        updateVisibleButtonsBasedOnSearch();
-
-        // Then render tooltips for visible buttons
-        for (Map.Entry<ButtonWidget, String> entry : tooltipMap.entrySet()) {
-            ButtonWidget button = entry.getKey();
-            if (button.isHovered() && button.visible) {
-                context.drawTooltip(
-                        MinecraftClient.getInstance().textRenderer,
-                        Text.literal(entry.getValue()),
-                        mouseX,
-                        mouseY
-                );
-                break; // Show only one tooltip at a time
-            }
+    // Sets the toggles to the selected profile, dropping other pending changes, and applies only the files that
+    // differ from the disk. The profile only becomes the active one once its files are in place; until then the
+    // toggles, pending changes included, can go back to how they were.
+    private void switchProfile() {
+        ModProfiles.Profile profile = selectedProfile == null ? null : ModProfiles.get(selectedProfile);
+        if (profile == null || activeBatch != null) return;
+
+        Map<ModToggle, Boolean> before = enabledStates();
+        int moves = ModProfiles.switchTo(profile, togglesByCategory());
+        dependencies.sync(modToggles);
+        updateSuggestion(List.of(), false);
+        bindingDirty = true;
+        if (moves == 0) {
+            ModProfiles.setActive(selectedProfile);
+            return;
         }
 
-        int y = -(int)scrollAmount;
-        int centerX = this.width / 2;
-        int spacing = 25;
+        ApplyTransaction batch = planApply();
+        List<Text> warnings = batch == null ? List.of() : applyWarnings(batch);
+        if (batch == null || !warnings.isEmpty() && !switchConfirmed) {
+            // Backed out: the disk is untouched, so the toggles go back too
+            restoreStates(before);
+            if (batch == null) return;
+            switchConfirmed = true;
+            profileButtons.get(1).setMessage(Text.of("§cSwitch anyway"));
+            warnings.add(Text.literal("Click again to switch anyway."));
+            switchTooltip = warnings;
+            return;
+        }
 
+        switchingTo = selectedProfile;
+        statesBeforeSwitch = before;
+        commitBatch(batch);
+    }
+
+    private Map<ModToggle, Boolean> enabledStates() {
+        Map<ModToggle, Boolean> states = new HashMap<>();
+        for (List<ModToggle> toggles : togglesByCategory().values()) {
+            for (ModToggle toggle : toggles) states.put(toggle, toggle.isEnabled());
+        }
+        return states;
+    }
+
+    private void restoreStates(Map<ModToggle, Boolean> states) {
+        for (Map.Entry<ModToggle, Boolean> entry : states.entrySet()) entry.getKey().setEnabled(entry.getValue());
+        dependencies.sync(modToggles);
+        bindingDirty = true;
+    }
+
+    // Updates the graph after a mod was toggled and offers to take its dependencies or dependents along.
+    private void onModToggled(ModToggle mod) {
+        dependencies.update(mod);
+        resetApplyConfirmation();
+        bindingDirty = true;
+        if (!mod.isEnabled()) {
+            updateSuggestion(dependencies.dependentsToDisable(mod), false);
+        } else {
+            updateSuggestion(dependencies.dependenciesToEnable(mod), true);
+        }
+    }
 
-        int offset = 40;
-        int col1X = centerX - 200 + offset;  // mod name + metadata
-        int col2X = centerX + offset;  // toggle button only
-        int col3X = centerX + 70 + offset;  // reset button
+    private void updateSuggestion(List<String> files, boolean enable) {
+        suggestedFiles = files;
+        suggestedEnable = enable;
+        suggestionButton.visible = !files.isEmpty();
+        if (files.isEmpty()) return;
 
-        y += 50;
+        String first = dependencies.labelOf(files.getFirst());
+        String others = files.size() > 1 ? " and " + (files.size() - 1) + " more" : "";
+        suggestionButton.setMessage(Text.literal((enable ? "Also enable " : "§eAlso disable ") + first + others));
+    }
 
-        // Only render if there are visible mods or if search is empty
-        boolean hasVisibleMods = hasVisibleItemsInCategory("mods");
-        if (hasVisibleMods || searchQuery.isEmpty()) {
-            ButtonWidget modsHeader = headerButtons.getFirst();
-            modsHeader.setX(centerX-120);
-            modsHeader.setY(y);
-            if (hasVisibleMods || searchQuery.isEmpty()) {
-                modsHeader.render(context, mouseX, mouseY, delta);
+    private void acceptSuggestion() {
+        Set<String> files = new HashSet<>(suggestedFiles);
+        for (ModToggle toggle : modToggles) {
+            if (files.contains(DependencyGraph.keyOf(toggle))) {
+                toggle.setEnabled(suggestedEnable);
+                dependencies.update(toggle);
             }
-            y += 25;
         }
+        updateSuggestion(List.of(), false);
+        resetApplyConfirmation();
+        bindingDirty = true;
+    }
 
-        for (int i = 0; i < modToggles.size(); i++) {
-            ModToggle toggle = modToggles.get(i);
-            if (!toggle.getDisplayName().toLowerCase().contains(searchQuery)) continue;
+    private void resetApplyConfirmation() {
+        if (switchConfirmed) {
+            switchConfirmed = false;
+            profileButtons.get(1).setMessage(Text.of("Switch"));
+        }
+        if (!warningsConfirmed) return;
+        warningsConfirmed = false;
+        headerButtons.get(3).setMessage(Text.of("Apply Changes"));
+        applyTooltip = List.of(APPLY_TOOLTIP);
+    }
 
-            drawUtil.renderModIcon(modToggles.get(i), context, col1X - offset, y, 20);
+    // Plans every pending mod and pack change and moves the files in the background.
+    private void startApply() {
+        if (activeBatch != null) return;
 
-            // Position and render toggle button
-            ButtonWidget toggleBtn = modToggleButtons.get(i);
-            toggleBtn.setX(col2X);
-            toggleBtn.setY(y);
-            toggleBtn.render(context, mouseX, mouseY, delta);
+        ApplyTransaction batch = planApply();
+        if (batch == null) return;
 
-            // Position and render reset button
-            ButtonWidget resetBtn = modResetButtons.get(i);
-            resetBtn.setX(col3X);
-            resetBtn.setY(y);
-            resetBtn.render(context, mouseX, mouseY, delta);
+        List<Text> warnings = applyWarnings(batch);
+        if (!warnings.isEmpty() && !warningsConfirmed) {
+            warningsConfirmed = true;
+            headerButtons.get(3).setMessage(Text.of("§cApply anyway"));
+            warnings.add(Text.literal("Click again to apply anyway."));
+            applyTooltip = warnings;
+            return;
+        }
+        commitBatch(batch);
+    }
 
-            ButtonWidget metadataBtn = modMetadataButtons.get(i);
-            metadataBtn.setX(col1X);
-            metadataBtn.setY(y);
-            metadataBtn.render(context, mouseX, mouseY, delta);
+    // The moves for the pending changes, or null after showing why they can't be made.
+    private ApplyTransaction planApply() {
+        try {
+            return ApplyTransaction.plan(togglesByCategory());
+        } catch (IOException e) {
+            e.printStackTrace();
+            showApplyError(e);
+            return null;
+        }
+    }
 
-            y += 25; // spacing between rows
+    // Mods that won't load cost a whole restart to find out about, and a replaced file is gone for good once the
+    // apply finishes, so both are asked about once before moving anything.
+    private List<Text> applyWarnings(ApplyTransaction batch) {
+        List<Text> warnings = new ArrayList<>();
+        int conflicts = dependencies.conflictCount();
+        if (conflicts > 0) warnings.add(Text.literal("§c" + conflicts + " enabled mods have missing or incompatible dependencies."));
+        for (ApplyTransaction.Move move : batch.replacements()) {
+            File from = new File(move.from());
+            File to = new File(move.to());
+            String existing = ContentHashes.cached(to);
+            // Replacing a file with an identical copy loses nothing
+            if (existing != null && existing.equals(ContentHashes.cached(from))) continue;
+            warnings.add(Text.literal("§6" + DuplicateFinder.locationOf(to) + " will be replaced by " + DuplicateFinder.locationOf(from)));
         }
+        return warnings;
+    }
 
-        // Only render if there are visible resource packs or if search is empty
-        boolean hasVisibleResources = hasVisibleItemsInCategory("resourcepacks");
-        if (hasVisibleResources || searchQuery.isEmpty()) {
-            y += 25;
-            ButtonWidget resourceHeader = headerButtons.get(1);
-            resourceHeader.setX(centerX-120);
-            resourceHeader.setY(y);
-            resourceHeader.render(context, mouseX, mouseY, delta);
-            y += 25;
+    private void commitBatch(ApplyTransaction batch) {
+        activeBatch = batch;
+        bindingDirty = true;
+        overlayDone = -1; // a new batch always gets its overlay built
+        // On Windows a pack the game has open can't be moved, so selected packs being switched off leave the
+        // game's selection first, and the reload that closes them finishes before any file moves
+        List<String> closedPacks = new ArrayList<>();
+        for (ModToggle toggle : resourceToggles) {
+            String name = toggle.getFile().getName();
+            if (toggle.hasPendingChange() && !toggle.isEnabled() && client.options.resourcePacks.contains("file/" + name)) {
+                closedPacks.add(name);
+                ResourceUtils.queueResourcePack(name, false);
+            }
+        }
+        ResourceUtils.applyQueued(client).whenComplete((reloaded, reloadError) -> batch.commitAsync()
+                .whenComplete((ignored, error) -> finishedApplies.add(() -> finishApply(batch, error, closedPacks))));
+    }
+
+    private void finishApply(ApplyTransaction batch, Throwable error, List<String> closedPacks) {
+        activeBatch = null;
+        bindingDirty = true;
+        resetApplyConfirmation();
+        String profile = switchingTo;
+        Map<ModToggle, Boolean> before = statesBeforeSwitch;
+        switchingTo = null;
+        statesBeforeSwitch = null;
+        if (error == null) {
+            if (profile != null) ModProfiles.setActive(profile);
+            // Packs switched on join the game's selection, all in one reload, now that they are in place; the ones
+            // switched off already left it before the move. Mods and shader packs need no reload.
+            for (ModToggle toggle : resourceToggles) {
+                if (toggle.hasPendingChange() && toggle.isEnabled()) ResourceUtils.queueResourcePack(toggle.getFile().getName(), true);
+            }
+            batch.finish();
+            ResourceUtils.applyQueued(client);
+            return;
         }
 
-        for (int i = 0; i < resourceToggles.size(); i++) {
-            ModToggle toggle = resourceToggles.get(i);
-            if (!toggle.getDisplayName().toLowerCase().contains(searchQuery)) continue;
+        // Nothing was moved; the folders are as they were before the click
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (!batch.isCancelled() || !"Cancelled".equals(cause.getMessage())) cause.printStackTrace();
+        if (before != null) restoreStates(before);
+        // The packs taken out of the game's selection before the move are still in place, so they go back in
+        for (String name : closedPacks) ResourceUtils.queueResourcePack(name, true);
+        ResourceUtils.applyQueued(client);
+        showApplyError(cause);
+    }
 
-            drawUtil.renderModIcon(resourceToggles.get(i), context, col1X - offset, y, 20);
+    private void showApplyError(Throwable error) {
+        boolean cancelled = "Cancelled".equals(error.getMessage());
+        SystemToast.add(client.getToastManager(), SystemToast.Type.PACK_COPY_FAILURE,
+                Text.of(cancelled ? "Changes cancelled" : "Could not apply changes"),
+                Text.of(cancelled ? "No files were moved" : error.getMessage()));
+    }
 
-            //Position and render toggle button
-            ButtonWidget resourceToggleBtn = resourceToggleButtons.get(i);
-            resourceToggleBtn.setX(col2X+30);
-            resourceToggleBtn.setY(y);
-            resourceToggleBtn.render(context, mouseX, mouseY, delta);
+    // Applies finished background work and, only when something changed, rebinds the pooled widgets and the
+    // apply overlay's text. Cost depends on the number of rows that fit on screen, not on the number of mods.
+    private void layoutFrame() {
+        applyLoadedMetadata();
+        drawUtil.processLoadedIcons();
 
-            ButtonWidget resourceMetadataBtn = resourceMetadataButtons.get(i);
-            resourceMetadataBtn.setX(col1X+30);
-            resourceMetadataBtn.setY(y);
-            resourceMetadataBtn.render(context, mouseX, mouseY, delta);
+        if (rowsDirty) rebuildRows();
+        if (bindingDirty) bindVisibleRows();
+        if (activeBatch != null) updateApplyOverlay();
 
-            y += 25; // spacing between rows
+        for (int i = 0; i < rowPool.size(); i++) {
+            RowWidgets row = rowPool.get(i);
+            if (row.bound != null) row.icon = drawUtil.getModIcon(row.bound.toggle);
         }
+    }
+
+    // Lays out the rows matching the search in content coordinates. Runs when the query or inventory changes.
+    private void rebuildRows() {
+        rowsDirty = false;
+        bindingDirty = true;
+        rows.clear();
 
-        // Only render if there are visible shader packs or if search is empty
-        boolean hasVisibleShaders = hasVisibleItemsInCategory("shaderpacks");
-        if (hasVisibleShaders || searchQuery.isEmpty()) {
-            y += 25;
-            ButtonWidget shaderHeader = headerButtons.get(2);
-            shaderHeader.setX(centerX-120);
-            shaderHeader.setY(y);
-            shaderHeader.render(context, mouseX, mouseY, delta);
-            y += 25;
+        int y = 0;
+        for (int header = 0; header < searchIndexes.length; header++) {
+            y = addCategoryRows(header, y);
         }
 
-        for (int i = 0; i < shaderToggles.size(); i++) {
-            ModToggle toggle = shaderToggles.get(i);
-            if (!toggle.getDisplayName().toLowerCase().contains(searchQuery)) continue;
+        footerY = y + ROW_HEIGHT;
+        int contentHeight = footerY + 4 * ROW_HEIGHT;
+        maxScroll = Math.max(0, LIST_TOP + contentHeight - this.height);
+        scrollAmount = Math.max(0, Math.min(scrollAmount, maxScroll));
+    }
 
-            drawUtil.renderModIcon(shaderToggles.get(i), context, col1X - offset, y, 20);
+    // Adds the header and the matching rows of one category, best matches first.
+    private int addCategoryRows(int header, int y) {
+        List<ListRow> matches = new ArrayList<>();
+        for (ModToggle toggle : searchIndexes[header].search(searchQuery)) {
+            matches.add(rowsByToggle.get(toggle));
+        }
+        // Search results stay in relevance order
+        if (header == 0 && searchQuery.isEmpty()) {
+            if (sortOrder == SortOrder.STARTUP) {
+                matches.sort(Comparator.comparingLong((ListRow row) -> row.startupMs).reversed());
+            } else if (sortOrder == SortOrder.CPU) {
+                matches.sort(Comparator.comparingDouble((ListRow row) -> row.cpuShare).reversed());
+            }
+        }
 
-            // Position and render toggle button
-            ButtonWidget shaderToggleBtn = shaderToggleButtons.get(i);
-            shaderToggleBtn.setX(col2X+30);
-            shaderToggleBtn.setY(y);
-            shaderToggleBtn.render(context, mouseX, mouseY, delta);
+        // Only show the header if there are visible entries or if search is empty
+        if (!matches.isEmpty() || searchQuery.isEmpty()) {
+            if (header > 0) y += ROW_HEIGHT; // gap between categories
+            ListRow headerRow = headerRows.get(header);
+            headerRow.y = y;
+            rows.add(headerRow);
+            y += ROW_HEIGHT;
+        }
+        for (ListRow row : matches) {
+            row.y = y;
+            rows.add(row);
+            y += ROW_HEIGHT;
+        }
+        return y;
+    }
+
+    // Binds the pooled widgets to the rows inside the viewport and hides everything else.
+    private void bindVisibleRows() {
+        bindingDirty = false;
+        int scroll = (int) scrollAmount;
+        int top = scroll - LIST_TOP;
+
+        // First row whose bottom edge is below the top of the screen
+        int low = 0, high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rows.get(mid).y + ROW_HEIGHT <= top) low = mid + 1; else high = mid;
+        }
 
-            ButtonWidget shaderMetadataBtn = shaderMetadataButtons.get(i);
-            shaderMetadataBtn.setX(col1X+30);
-            shaderMetadataBtn.setY(y);
-            shaderMetadataBtn.render(context, mouseX, mouseY, delta);
+        for (int h = 0; h < 3; h++) headerButtons.get(h).visible = false;
+        sortButton.visible = false;
+        profilerButton.visible = false;
+
+        int slot = 0;
+        for (int r = low; r < rows.size() && slot < rowPool.size(); r++) {
+            ListRow row = rows.get(r);
+            int screenY = row.y + LIST_TOP - scroll;
+            if (screenY > this.height) break;
+
+            if (row.kind == RowKind.HEADER) {
+                ButtonWidget header = headerButtons.get(row.header);
+                header.setX(this.width / 2 - 120);
+                header.setY(screenY);
+                header.visible = true;
+                if (row.header == 0) {
+                    sortButton.setX(this.width / 2 + 125);
+                    sortButton.setY(screenY);
+                    sortButton.visible = true;
+                    profilerButton.setX(this.width / 2 - 200);
+                    profilerButton.setY(screenY);
+                    profilerButton.visible = true;
+                }
+            } else {
+                rowPool.get(slot++).bind(row, screenY);
+            }
+        }
+        for (; slot < rowPool.size(); slot++) {
+            rowPool.get(slot).unbind();
+        }
 
-            y += 25; // spacing between rows
+        // Nothing may change while an apply is moving files
+        boolean idle = activeBatch == null;
+        for (int i = 0; i < rowPool.size(); i++) {
+            rowPool.get(i).toggle.active = idle;
+            rowPool.get(i).reset.active = idle;
         }
+        reloadButtons.getFirst().active = idle;
+        headerButtons.get(3).active = idle;
+        headerButtons.get(4).active = idle;
+        for (ButtonWidget button : profileButtons) button.active = idle;
+        suggestionButton.active = idle;
 
-        y += 25;
+        int centerX = this.width / 2;
+        int footerScreenY = footerY + LIST_TOP - scroll;
 
         ButtonWidget resourceButton = reloadButtons.getFirst();
         resourceButton.setX(centerX-120);
-        resourceButton.setY(y);
-        resourceButton.render(context, mouseX, mouseY, delta);
-
-        y +=25;
+        resourceButton.setY(footerScreenY);
 
         ButtonWidget applyBtn = headerButtons.get(3);
         applyBtn.setX(centerX - 130);
-        applyBtn.setY(y);
-        applyBtn.render(context, mouseX, mouseY, delta);
+        applyBtn.setY(footerScreenY + ROW_HEIGHT);
 
         ButtonWidget cancelBtn = headerButtons.get(4);
         cancelBtn.setX(centerX + 10);
-        cancelBtn.setY(y);
-        cancelBtn.render(context, mouseX, mouseY, delta);
+        cancelBtn.setY(footerScreenY + ROW_HEIGHT);
+
+        // Cycle, switch and delete on one line, the name field and save below
+        int profileY = footerScreenY + 2 * ROW_HEIGHT;
+        profileButtons.get(0).setX(centerX - 120);
+        profileButtons.get(0).setY(profileY);
+        profileButtons.get(1).setX(centerX + 2);
+        profileButtons.get(1).setY(profileY);
+        profileButtons.get(2).setX(centerX + 62);
+        profileButtons.get(2).setY(profileY);
+        profileNameField.setX(centerX - 120);
+        profileNameField.setY(profileY + ROW_HEIGHT);
+        profileButtons.get(3).setX(centerX + 62);
+        profileButtons.get(3).setY(profileY + ROW_HEIGHT);
+    }
 
-        y += btnHeight + spacing;// move y down for any following content
+    @Override
+    public void tick() {
+        super.tick();
+        if (++ticksSinceCpuRefresh >= 20) {
+            ticksSinceCpuRefresh = 0;
+            refreshCpuShares();
+        }
+        // Just a reference check; the watcher has already done the I/O
+        InventoryScanner.Snapshot latest = InventoryScanner.latest();
+        // While an apply runs the folders are mid-change; pick up the result once it is done
+        if (activeBatch == null && inventory != null && latest != inventory && InventoryWatcher.isRunning()) {
+            refreshInventory(latest);
+        }
+    }
 
-        super.render(context, mouseX, mouseY, delta);
+    private void refreshInventory(InventoryScanner.Snapshot snapshot) {
+        this.inventory = snapshot;
+        mergeToggles(modToggles, ModUtils.getModToggles(snapshot));
+        mergeToggles(resourceToggles, ModUtils.getResourceToggles(snapshot));
+        mergeToggles(shaderToggles, ModUtils.getShaderToggles(snapshot));
+        clearAndInit();
+    }
 
-        context.fillGradient(0, 20, this.width, 30, 0xC0000000, 0x00000000);
-        context.fillGradient(0, this.height-10, this.width, this.height, 0x00000000, 0xC0000000);
-        this.searchBox.render(context, mouseX, mouseY, delta);
+    // Replaces the list with the new toggles, carrying over changes the user hasn't applied yet.
+    private static void mergeToggles(List<ModToggle> current, List<ModToggle> fresh) {
+        // By path: an enabled jar and a disabled copy of the same name are different rows
+        Map<String, ModToggle> previous = new HashMap<>();
+        for (ModToggle toggle : current) previous.put(DependencyGraph.keyOf(toggle), toggle);
+
+        current.clear();
+        for (ModToggle toggle : fresh) {
+            ModToggle old = previous.get(DependencyGraph.keyOf(toggle));
+            if (old != null && old.hasPendingChange()) {
+                toggle.setEnabled(old.isEnabled());
+            }
+            current.add(toggle);
+        }
+    }
+
+    private void applyLoadedMetadata() {
+        Runnable update;
+        while ((update = loadedMetadata.poll()) != null) {
+            update.run();
+        }
+        while ((update = finishedApplies.poll()) != null) {
+            update.run();
+        }
+    }
+
+    @Override
+    public void removed() {
+        // Loads that haven't started yet are skipped once the screen is gone
+        closed = true;
+        super.removed();
+    }
+
+    @Override
+    public boolean shouldCloseOnEsc() {
+        // The batch reports back to this screen, so it stays open until the files are moved
+        return activeBatch == null;
     }
 
     @Override
     public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
         scrollAmount -= verticalAmount * scrollStep;
         scrollAmount = Math.max(0, Math.min(scrollAmount, maxScroll));
+        bindingDirty = true;
         return true;
     }
 
@@ -569,107 +1365,9 @@ public class ModManagerScreen extends Screen{
         return false;
     }
 
-    private boolean hasVisibleItemsInCategory(String category) {
-        switch (category) {
-            case "mods":
-                for (ModToggle toggle : modToggles) {
-                    if (toggle.getDisplayName().toLowerCase().contains(searchQuery)) {
-                        return true;
-                    }
-                }
-                return false;
-            case "resourcepacks":
-                for (ModToggle toggle : resourceToggles) {
-                    if (toggle.getDisplayName().toLowerCase().contains(searchQuery)) {
-                        return true;
-                    }
-                }
-                return false;
-            case "shaderpacks":
-                for (ModToggle toggle : shaderToggles) {
-                    if (toggle.getDisplayName().toLowerCase().contains(searchQuery)) {
-                        return true;
-                    }
-                }
-                return false;
-            default:
-                return false;
-        }
-    }
-
-    private void updateVisibleButtonsBasedOnSearch() {
-        // Update mod buttons visibility
-        for (int i = 0; i < modToggles.size(); i++) {
-            ModToggle toggle = modToggles.get(i);
-            boolean shouldShow = toggle.getDisplayName().toLowerCase().contains(searchQuery);
-
-            modToggleButtons.get(i).visible = shouldShow;
-            modResetButtons.get(i).visible = shouldShow;
-            modMetadataButtons.get(i).visible = shouldShow;
-        }
-
-        // Update resource pack buttons visibility
-        for (int i = 0; i < resourceToggles.size(); i++) {
-            ModToggle toggle = resourceToggles.get(i);
-            boolean shouldShow = toggle.getDisplayName().toLowerCase().contains(searchQuery);
-
-            resourceToggleButtons.get(i).visible = shouldShow;
-            resourceMetadataButtons.get(i).visible = shouldShow;
-        }
-
-        // Update shader pack buttons visibility
-        for (int i = 0; i < shaderToggles.size(); i++) {
-            ModToggle toggle = shaderToggles.get(i);
-            boolean shouldShow = toggle.getDisplayName().toLowerCase().contains(searchQuery);
-
-            shaderToggleButtons.get(i).visible = shouldShow;
-            shaderMetadataButtons.get(i).visible = shouldShow;
-        }
-
-        headerButtons.get(0).visible = hasVisibleItemsInCategory("mods") || searchQuery.isEmpty(); // Mods header
-        headerButtons.get(1).visible = hasVisibleItemsInCategory("resourcepacks") || searchQuery.isEmpty(); // Resource packs header
-        headerButtons.get(2).visible = hasVisibleItemsInCategory("shaderpacks") || searchQuery.isEmpty(); // Shader packs header
-    }
-
+    // Refreshes the toggle buttons on screen, e.g. after toggles were changed from outside the list.
     public void updateVisibleButtons(String type){
-        if (type.equals("mods")){
-            for (int i = 0; i < modToggles.size(); i++) {
-                ModToggle toggle = modToggles.get(i);
-                ButtonWidget btn = modToggleButtons.get(i);
-                btn.setMessage(toggle.getButtonText());
-                btn.active = true;
-
-            }
-        } else if (type.equals("resourcepacks")){
-            for (int i = 0; i < resourceToggles.size(); i++) {
-                ModToggle toggle = resourceToggles.get(i);
-                ButtonWidget btn = resourceToggleButtons.get(i);
-                btn.setMessage(toggle.getButtonText());
-                btn.active = true;
-
-            }
-        } else if (type.equals("shaderpacks")){
-            for (int i = 0; i < shaderToggles.size(); i++) {
-                ModToggle toggle = shaderToggles.get(i);
-                ButtonWidget btn = shaderToggleButtons.get(i);
-                btn.setMessage(toggle.getButtonText());
-                btn.active = true;
-            }
-        } else if (type.equals("headers")){
-            for (int i = 0; i < headerButtons.size(); i++) {
-                ButtonWidget btn = headerButtons.get(i);
-                if (!(btn.active == true)){btn.active = false;}
-                else if (btn.active == true){btn.active = true;}
-
-            }
-        }
-
-        if (type.equals("all")){
-            updateVisibleButtons("mods");
-            updateVisibleButtons("resourcepacks");
-            updateVisibleButtons("shaderpacks");
-            updateVisibleButtons("headers");
-        }
+        bindingDirty = true;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package net.guag.simplemodmanager;
+
+import com.google.gson.Gson;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of the {@link ModDescriptor} for each mod jar, stored next to
+ * the state file in the config folder. Entries are keyed by the file's full path
+ * and only trusted while its size and last-modified time are unchanged, so a
+ * screen open costs one stat per jar instead of several unzips.
+ */
+public class ModMetadataIndex {
+    private static final File INDEX_FILE = new File(MinecraftClient.getInstance().runDirectory, "config/simplemodmanager_metadata.json");
+    // Bumped whenever JarInspector starts reading something new, so old entries are re-inspected
+    private static final int VERSION = 6;
+
+    private record StoredIndex(int version, Map<String, ModDescriptor> entries) {}
+
+    // Read from the background loaders concurrently, so inspection itself happens outside any lock
+    private static final Map<String, ModDescriptor> entries = new ConcurrentHashMap<>();
+    private static boolean loaded = false;
+    private static volatile boolean dirty = false;
+
+    // Uses the size and mtime the inventory scan already read, so a cache hit needs no I/O at all.
+    public static ModDescriptor get(ModToggle toggle) {
+        return get(toggle.getFile(), toggle.getSize(), toggle.getLastModified());
+    }
+
+    public static ModDescriptor get(File modFile) {
+        return get(modFile, -1, -1);
+    }
+
+    // Returns the cached descriptor for this file, re-inspecting it only if it is new or changed.
+    public static ModDescriptor get(File modFile, long size, long lastModified) {
+        load();
+        File file = modFile;
+        if (size < 0) {
+            file = resolveFile(modFile);
+            size = file.length();
+            lastModified = file.lastModified();
+        }
+
+        String key = file.getAbsolutePath();
+        ModDescriptor descriptor = entries.get(key);
+        if (descriptor != null && descriptor.size() == size && descriptor.lastModified() == lastModified) {
+            return descriptor;
+        }
+        // A jar that was just enabled or disabled keeps its size and mtime, so the entry from its old folder still holds
+        ModDescriptor moved = entries.get(otherFolder(file).getAbsolutePath());
+        if (moved != null && moved.size() == size && moved.lastModified() == lastModified) {
+            entries.put(key, moved);
+            dirty = true;
+            return moved;
+        }
+
+        descriptor = JarInspector.inspect(resolveFile(file));
+        entries.put(key, descriptor);
+        dirty = true;
+        return descriptor;
+    }
+
+    // Drops entries for files that are no longer installed.
+    public static synchronized void retainOnly(Collection<File> files) {
+        load();
+        Set<String> paths = new HashSet<>();
+        for (File file : files) paths.add(file.getAbsolutePath());
+        if (entries.keySet().retainAll(paths)) {
+            dirty = true;
+        }
+    }
+
+    public static synchronized void save() {
+        if (!dirty) return;
+        try {
+            INDEX_FILE.getParentFile().mkdirs(); // Make sure config dir exists
+            try (FileWriter writer = new FileWriter(INDEX_FILE)) {
+                new Gson().toJson(new StoredIndex(VERSION, new HashMap<>(entries)), writer);
+            }
+            dirty = false;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!INDEX_FILE.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(INDEX_FILE))) {
+            StoredIndex stored = new Gson().fromJson(reader, StoredIndex.class);
+            // Files from older versions are missing fields and are simply rebuilt
+            if (stored != null && stored.version() == VERSION && stored.entries() != null) {
+                entries.putAll(stored.entries());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            // A broken index is just rebuilt from the jars
+            entries.clear();
+        }
+    }
+
+    // The same name in the disabled folder for an enabled file, and the other way round.
+    private static File otherFolder(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        for (InventoryScanner.Category category : InventoryScanner.Category.values()) {
+            if (category.activeFolder.getAbsoluteFile().equals(parent)) return new File(category.disabledFolder, file.getName());
+            if (category.disabledFolder.getAbsoluteFile().equals(parent)) return new File(category.activeFolder, file.getName());
+        }
+        return file;
+    }
+
+    // If the file was moved between the enabled and disabled folders, look in the other one.
+    public static File resolveFile(File modFile) {
+        if (modFile.exists()) return modFile;
+        File enabledFile = new File(ModUtils.MODS_FOLDER, modFile.getName());
+        if (enabledFile.exists()) return enabledFile;
+        File disabledFile = new File(ModUtils.DISABLED_MODS_FOLDER, modFile.getName());
+        if (disabledFile.exists()) return disabledFile;
+        return modFile;
+    }
+}
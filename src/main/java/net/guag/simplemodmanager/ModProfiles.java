@@ -0,0 +1,154 @@
+package net.guag.simplemodmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Named sets of enabled and disabled mods, resource packs and shader packs,
+ * stored in config/simplemodmanager_profiles.json. A profile only records the
+ * files it was saved with, so files installed later keep whatever state they
+ * have on disk when the profile is switched to.
+ *
+ * Files are recorded by their path relative to the category folder they sit
+ * in, so a file keeps its entry when it moves between the enabled and the
+ * disabled folder. A name that has a copy in both folders can't be told apart
+ * that way; profiles leave such files alone.
+ */
+public class ModProfiles {
+    private static final File PROFILES_FILE = new File(MinecraftClient.getInstance().runDirectory, "config/simplemodmanager_profiles.json");
+
+    // Path relative to the category folder -> enabled, per category
+    public record Profile(Map<InventoryScanner.Category, Map<String, Boolean>> states) {
+        public Profile {
+            states = states == null ? new EnumMap<>(InventoryScanner.Category.class) : states;
+        }
+
+        public Map<String, Boolean> get(InventoryScanner.Category category) {
+            Map<String, Boolean> result = states.get(category);
+            return result == null ? Map.of() : result;
+        }
+    }
+
+    private static final class Stored {
+        Map<String, Profile> profiles = new TreeMap<>();
+        String active = null;
+    }
+
+    private static Stored stored;
+
+    // Profile names in alphabetical order
+    public static synchronized List<String> names() {
+        return new ArrayList<>(load().profiles.keySet());
+    }
+
+    public static synchronized Profile get(String name) {
+        return load().profiles.get(name);
+    }
+
+    // The profile last saved or switched to, or null.
+    public static synchronized String active() {
+        String active = load().active;
+        return active != null && stored.profiles.containsKey(active) ? active : null;
+    }
+
+    public static synchronized void setActive(String name) {
+        load().active = name;
+        save();
+    }
+
+    // Stores the state every toggle is set to now, pending changes included, under this name.
+    public static synchronized void capture(String name, Map<InventoryScanner.Category, List<ModToggle>> togglesByCategory) {
+        Map<InventoryScanner.Category, Map<String, Boolean>> states = new EnumMap<>(InventoryScanner.Category.class);
+        for (Map.Entry<InventoryScanner.Category, List<ModToggle>> entry : togglesByCategory.entrySet()) {
+            Map<String, Boolean> files = new TreeMap<>();
+            for (Map.Entry<String, List<ModToggle>> file : byKey(entry.getKey(), entry.getValue()).entrySet()) {
+                if (file.getValue().size() == 1) files.put(file.getKey(), file.getValue().getFirst().isEnabled());
+            }
+            states.put(entry.getKey(), files);
+        }
+        load().profiles.put(name, new Profile(states));
+        stored.active = name;
+        save();
+    }
+
+    public static synchronized void delete(String name) {
+        if (load().profiles.remove(name) == null) return;
+        if (name.equals(stored.active)) stored.active = null;
+        save();
+    }
+
+    // Sets the toggles to the profile's states and returns how many files the next apply will move. Switching
+    // drops every pending change first: files the profile doesn't mention, in any category, go back to how
+    // they are on disk, so the apply that follows makes exactly the profile's moves and nothing else.
+    public static int switchTo(Profile profile, Map<InventoryScanner.Category, List<ModToggle>> togglesByCategory) {
+        int moves = 0;
+        for (Map.Entry<InventoryScanner.Category, List<ModToggle>> entry : togglesByCategory.entrySet()) {
+            Map<String, Boolean> states = profile.get(entry.getKey());
+            for (Map.Entry<String, List<ModToggle>> file : byKey(entry.getKey(), entry.getValue()).entrySet()) {
+                Boolean enabled = file.getValue().size() == 1 ? states.get(file.getKey()) : null;
+                for (ModToggle toggle : file.getValue()) {
+                    toggle.setEnabled(enabled != null ? enabled : toggle.isEnabledOnDisk());
+                    if (toggle.hasPendingChange()) moves++;
+                }
+            }
+        }
+        return moves;
+    }
+
+    // The toggles of a category grouped by the path they are recorded under; more than one means copies in
+    // both folders.
+    private static Map<String, List<ModToggle>> byKey(InventoryScanner.Category category, List<ModToggle> toggles) {
+        Map<String, List<ModToggle>> result = new HashMap<>();
+        for (ModToggle toggle : toggles) {
+            result.computeIfAbsent(keyOf(category, toggle), key -> new ArrayList<>()).add(toggle);
+        }
+        return result;
+    }
+
+    private static String keyOf(InventoryScanner.Category category, ModToggle toggle) {
+        File folder = toggle.isEnabledOnDisk() ? category.activeFolder : category.disabledFolder;
+        Path relative = folder.toPath().toAbsolutePath().normalize().relativize(toggle.getFile().toPath().toAbsolutePath().normalize());
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    private static Stored load() {
+        if (stored != null) return stored;
+        stored = new Stored();
+        if (!PROFILES_FILE.exists()) return stored;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(PROFILES_FILE))) {
+            Stored read = new Gson().fromJson(reader, Stored.class);
+            if (read != null && read.profiles != null) {
+                stored.profiles.putAll(read.profiles);
+                stored.active = read.active;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return stored;
+    }
+
+    private static void save() {
+        try {
+            PROFILES_FILE.getParentFile().mkdirs(); // Make sure config dir exists
+            try (FileWriter writer = new FileWriter(PROFILES_FILE)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(stored, writer);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
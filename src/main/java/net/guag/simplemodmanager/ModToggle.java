@@ -17,16 +17,34 @@ import java.util.Set;
 public class ModToggle {
     private File file;
     private final String jarName;
+    // Derived names, computed once since they are read every frame
+    private final String displayName;
+    private final String searchName;
+    private final String iconKey;
     private boolean enabled;
+    // State of the file on disk when this toggle was created or last applied
+    private boolean enabledOnDisk;
+    // Size and mtime from the inventory scan, or -1 when the toggle was built without one
+    private final long size;
+    private final long lastModified;
 
     // This set now represents the persisted disabled mods list
     private static Set<String> defaultDisabledMods = new HashSet<>();
 
     public ModToggle(File file, boolean enabled) {
+        this(file, enabled, -1, -1);
+    }
+
+    public ModToggle(File file, boolean enabled, long size, long lastModified) {
         this.file = file;
         this.enabled = enabled;
+        this.enabledOnDisk = enabled;
         this.jarName = file.getName();
-
+        this.size = size;
+        this.lastModified = lastModified;
+        this.displayName = jarName.replaceAll("\\.(jar|zip)$", ""); // Remove extensions from name
+        this.searchName = displayName.toLowerCase();
+        this.iconKey = jarName + ":" + size + ":" + lastModified;
     }
 
     public void toggle() {
@@ -37,24 +55,36 @@ public class ModToggle {
         return enabled;
     }
 
+    // True if the user changed this toggle and it hasn't been applied yet.
+    public boolean hasPendingChange() {
+        return enabled != enabledOnDisk;
+    }
+
+    // Whether the file sits in the enabled folder right now, whatever the toggle says.
+    public boolean isEnabledOnDisk() {
+        return enabledOnDisk;
+    }
+
     public File getFile() {
         return file;
     }
 
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
     public Text getButtonText() {
         return Text.of(enabled ? "§aEnabled " : "§7Disabled ");
     }
 
-    public void applyChange() {
-        try {
-            if (enabled) {
-                this.file = ModUtils.moveModToEnabled(file);
-            } else {
-                this.file = ModUtils.moveModToDisabled(file);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    // Called by ApplyTransaction once the file has been moved to match this toggle.
+    public void markApplied(File newFile) {
+        this.file = newFile;
+        this.enabledOnDisk = enabled;
     }
 
 
@@ -145,6 +175,12 @@ public class ModToggle {
 
     public String getJarName() {return this.jarName;}
 
-    public String getDisplayName() {/** Remove extentions from name **/return jarName.replaceAll("\\.(jar|zip)$", "");}
+    public String getDisplayName() {return displayName;}
+
+    // Lower-cased display name the search box matches against
+    public String getSearchName() {return searchName;}
+
+    // Key for the icon caches; changes whenever the file is replaced
+    public String getIconKey() {return iconKey;}
 
 }
@@ -3,7 +3,6 @@ package net.guag.simplemodmanager;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,17 +27,17 @@ public class ModUtils {
         DISABLED_SHADERPACKS_FOLDER.mkdirs();
     }
 
-    // Moves a mod .jar into the active mods folder.
+    // Moves a mod .jar into the active mods folder. Throws if a file of the same name is already there.
     public static File moveModToEnabled(File modFile) throws IOException {
         File newFile = new File(MODS_FOLDER, modFile.getName());
-        Files.move(modFile.toPath(), new File(MODS_FOLDER, modFile.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(modFile.toPath(), newFile.toPath());
         return newFile;
     }
 
-    // Moves a mod .jar into the disabled mods folder.
+    // Moves a mod .jar into the disabled mods folder. Throws if a file of the same name is already there.
     public static File moveModToDisabled(File modFile) throws IOException {
-        File newFile = new File(MODS_FOLDER, modFile.getName());
-        Files.move(modFile.toPath(), new File(DISABLED_MODS_FOLDER, modFile.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        File newFile = new File(DISABLED_MODS_FOLDER, modFile.getName());
+        Files.move(modFile.toPath(), newFile.toPath());
         return newFile;
     }
 
@@ -46,70 +45,35 @@ public class ModUtils {
     public static void moveResourcePack(String packName, boolean enable) throws IOException {
         File from = new File(enable ? DISABLED_RESOURCEPACKS_FOLDER : RESOURCEPACKS_FOLDER, packName);
         File to = new File(enable ? RESOURCEPACKS_FOLDER : DISABLED_RESOURCEPACKS_FOLDER, packName);
-        Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(from.toPath(), to.toPath());
     }
 
     // Moves a shader pack file (folder or zip) to the appropriate folder.
     public static void moveShaderPack(String packName, boolean enable) throws IOException {
         File from = new File(enable ? DISABLED_SHADERPACKS_FOLDER : SHADERPACKS_FOLDER, packName);
         File to = new File(enable ? SHADERPACKS_FOLDER : DISABLED_SHADERPACKS_FOLDER, packName);
-        Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(from.toPath(), to.toPath());
     }
 
-    // Scan the active and disabled mods folders and return a list of ModToggle objects.
-    public static List<ModToggle> getModToggles() {
-        List<ModToggle> toggles = new ArrayList<>();
-        File[] enabled = MODS_FOLDER.listFiles((dir, name) -> name.endsWith(".jar"));
-        File[] disabled = DISABLED_MODS_FOLDER.listFiles((dir, name) -> name.endsWith(".jar"));
-
-        if (enabled != null) {
-            for (File f : enabled) {
-                toggles.add(new ModToggle(f, true));
-            }
-        }
-        if (disabled != null) {
-            for (File f : disabled) {
-                toggles.add(new ModToggle(f, false));
-            }
-        }
-        return toggles;
+    // Build ModToggle objects for the active and disabled mods in an inventory snapshot.
+    public static List<ModToggle> getModToggles(InventoryScanner.Snapshot inventory) {
+        return toToggles(inventory.get(InventoryScanner.Category.MODS));
     }
 
-    public static List<ModToggle> getResourceToggles() {
-        List<ModToggle> ResourceToggles = new ArrayList<>();
-        File[] enabled = RESOURCEPACKS_FOLDER.listFiles((dir, name) -> !(name.endsWith(".txt")) && !(name.endsWith(".DS_Store")) && !(name.contains("disabled-resourcepacks")));
-        File[] disabled = DISABLED_RESOURCEPACKS_FOLDER.listFiles((dir, name) -> !(name.endsWith(".txt")) && !(name.endsWith(".DS_Store"))&& !(name.contains("disabled-resourcepacks")));
-
-        if (enabled != null) {
-            for (File f : enabled) {
-                ResourceToggles.add(new ModToggle(f, true));
-            }
-        }
-        if (disabled != null) {
-            for (File f : disabled) {
-                ResourceToggles.add(new ModToggle(f, false));
-            }
-        }
-        return ResourceToggles;
+    public static List<ModToggle> getResourceToggles(InventoryScanner.Snapshot inventory) {
+        return toToggles(inventory.get(InventoryScanner.Category.RESOURCEPACKS));
     }
 
-    public static List<ModToggle> getShaderToggles() {
-        List<ModToggle> shaderToggles = new ArrayList<>();
-        File[] enabled = SHADERPACKS_FOLDER.listFiles((dir, name) ->!(name.endsWith(".txt")) && !(name.endsWith(".DS_Store"))&& !(name.contains("disabled-shaderpacks")));
-        File[] disabled = DISABLED_SHADERPACKS_FOLDER.listFiles((dir, name) -> !(name.endsWith(".txt")) && !(name.endsWith(".DS_Store"))&& !(name.contains("disabled-shaderpacks")));
-
+    public static List<ModToggle> getShaderToggles(InventoryScanner.Snapshot inventory) {
+        return toToggles(inventory.get(InventoryScanner.Category.SHADERPACKS));
+    }
 
-        if (enabled != null) {
-            for (File f : enabled) {
-                shaderToggles.add(new ModToggle(f, true));
-            }
-        }
-        if (disabled != null) {
-            for (File f : disabled) {
-                shaderToggles.add(new ModToggle(f, false));
-            }
+    private static List<ModToggle> toToggles(List<InventoryScanner.Entry> entries) {
+        List<ModToggle> toggles = new ArrayList<>();
+        for (InventoryScanner.Entry entry : entries) {
+            toggles.add(new ModToggle(entry.file(), entry.enabled(), entry.size(), entry.lastModified()));
         }
-        return shaderToggles;
+        return toggles;
     }
 
     // Similar file-scanning functions could be added for resource packs and shader packs if needed.
@@ -1,29 +1,88 @@
 package net.guag.simplemodmanager;
 
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.resource.ResourcePackManager;
+import net.minecraft.resource.ResourcePackProfile;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Turns resource pack toggles into the game's own pack selection. Changes are
+ * queued and then handed to the client's {@link ResourcePackManager} together,
+ * so a batch of toggles costs at most one resource reload, and none when the
+ * selection ends up unchanged. The selection is saved to options.txt like
+ * the vanilla pack screen does.
+ *
+ * The Refresh button goes through here too: it rescans the folders like an
+ * apply does, and its reload is folded into one the manager already started.
+ */
 public class ResourceUtils {
-    private final MinecraftClient client;
+    private static final CompletableFuture<Void> NO_RELOAD = CompletableFuture.completedFuture(null);
 
-    public ResourceUtils(MinecraftClient client) {
-        this.client = client;
+    // Pack file or folder name -> enabled, in the order they were toggled
+    private static final Map<String, Boolean> queued = new LinkedHashMap<>();
+    private static CompletableFuture<Void> pendingReload = NO_RELOAD;
+
+    // Remembers a pack to switch on or off with the next applyQueued().
+    public static void queueResourcePack(String packName, boolean enable) {
+        queued.put(packName, enable);
     }
 
-    public void toggleResourcePack(String packName, boolean enable) {
-        try {
-            ModUtils.moveResourcePack(packName, enable);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    // Applies every queued change at once; call on the render thread. The future completes once the game has
+    // reloaded, and with it closed the packs that were switched off, or at once if nothing had to be reloaded.
+    public static CompletableFuture<Void> applyQueued(MinecraftClient client) {
+        if (queued.isEmpty()) return NO_RELOAD;
+        return apply(client, false);
+    }
+
+    // Picks up packs added, removed or edited on disk, together with anything queued.
+    public static CompletableFuture<Void> refresh(MinecraftClient client) {
+        return apply(client, true);
     }
 
-    public void toggleShaderPack(String packName, boolean enable) {
-        try {
-            ModUtils.moveShaderPack(packName, enable);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static CompletableFuture<Void> apply(MinecraftClient client, boolean refresh) {
+        ResourcePackManager manager = client.getResourcePackManager();
+        // Packs moved into the disabled folder drop out here, ones moved back become known
+        manager.scanPacks();
+
+        List<String> enabled = new ArrayList<>(manager.getEnabledIds());
+        for (Map.Entry<String, Boolean> entry : queued.entrySet()) {
+            String id = "file/" + entry.getKey();
+            if (!entry.getValue()) {
+                enabled.remove(id);
+            } else if (!enabled.contains(id) && manager.getIds().contains(id)) {
+                // Last in the list is highest priority, as when a pack is added in the vanilla screen
+                enabled.add(id);
+            }
+        }
+        queued.clear();
+        manager.setEnabledProfiles(enabled);
+
+        // What GameOptions.refreshResourcePacks does, except that the reload is started here so it can be awaited
+        List<String> selected = new ArrayList<>();
+        List<String> incompatible = new ArrayList<>();
+        for (ResourcePackProfile profile : manager.getEnabledProfiles()) {
+            if (profile.isPinned()) continue;
+            selected.add(profile.getId());
+            if (!profile.getCompatibility().isCompatible()) incompatible.add(profile.getId());
+        }
+        if (selected.equals(client.options.resourcePacks)) {
+            if (!refresh) return NO_RELOAD;
+            // Same selection: a reload already on its way reads the packs' current files anyway
+            if (pendingReload.isDone()) pendingReload = client.reloadResources();
+            return pendingReload;
         }
+        client.options.resourcePacks.clear();
+        client.options.resourcePacks.addAll(selected);
+        client.options.incompatibleResourcePacks.clear();
+        client.options.incompatibleResourcePacks.addAll(incompatible);
+        client.options.write();
+        // A reload requested while another one runs is folded into a single follow-up by the client
+        pendingReload = client.reloadResources();
+        return pendingReload;
     }
 }
@@ -0,0 +1,308 @@
+package net.guag.simplemodmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fuzzy, ranked search over the names of one list of toggles. Names are
+ * normalized once and indexed by trigram and by word initials, so a query only
+ * verifies the entries that can possibly match. Typing more of the same query
+ * narrows the previous results instead of searching everything again.
+ *
+ * Each query word has to match somewhere in the name, as a prefix, a word
+ * start, a substring, the word initials ("jei") or, for longer words, with one
+ * or two typos. Failing that, a word of the mod's metadata in the
+ * {@link MetadataSearchIndex} starting with it also counts. Words written as
+ * "field:value" (author:, id:, name:, desc:) only match that metadata field.
+ * Results are ordered by how well they matched.
+ */
+public class SearchIndex {
+    private static final int PREFIX = 100;
+    private static final int WORD_START = 80;
+    private static final int SUBSTRING = 60;
+    private static final int INITIALS = 50;
+    private static final int FUZZY = 30;
+    private static final int FIELD = 90;
+    private static final int METADATA = 20;
+
+    // A query word; field is null for words matched against the name
+    private record Term(MetadataSearchIndex.Field field, String text) {}
+
+    private final List<ModToggle> toggles;
+    private final String[] names;
+    // File paths as MetadataSearchIndex knows them, so a metadata match only counts for the file that has it
+    private final String[] paths;
+    private final String[] initials;
+    // Entry ids whose name contains the trigram
+    private final Map<String, int[]> trigrams = new HashMap<>();
+    // Entry ids sorted by initials, so a prefix is a binary-searched range
+    private final Integer[] byInitials;
+
+    // Result of the previous query, reused while the user keeps typing
+    private List<Term> lastTerms = List.of();
+    private int[] lastMatches = null;
+    private int lastMetadataVersion = -1;
+
+    // Edit distance rows, reused since searches run on the render thread one at a time
+    private int[] before = new int[0], previous = new int[0], current = new int[0];
+
+    public SearchIndex(List<ModToggle> toggles) {
+        this.toggles = new ArrayList<>(toggles);
+        int count = this.toggles.size();
+        this.names = new String[count];
+        this.paths = new String[count];
+        this.initials = new String[count];
+
+        Map<String, List<Integer>> postings = new HashMap<>();
+        for (int id = 0; id < count; id++) {
+            names[id] = normalize(this.toggles.get(id).getSearchName());
+            paths[id] = DependencyGraph.keyOf(this.toggles.get(id));
+            initials[id] = initialsOf(names[id]);
+            for (String trigram : trigramsOf(names[id])) {
+                postings.computeIfAbsent(trigram, t -> new ArrayList<>()).add(id);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : postings.entrySet()) {
+            trigrams.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        byInitials = new Integer[count];
+        for (int id = 0; id < count; id++) byInitials[id] = id;
+        Arrays.sort(byInitials, (a, b) -> initials[a].compareTo(initials[b]));
+    }
+
+    // Returns the matching toggles, best match first; an empty query returns everything in list order.
+    public List<ModToggle> search(String query) {
+        List<Term> terms = parse(query);
+        if (terms.isEmpty()) {
+            lastTerms = terms;
+            lastMatches = null;
+            return new ArrayList<>(toggles);
+        }
+
+        int[] scores = new int[toggles.size()];
+        int metadataVersion = MetadataSearchIndex.version();
+        int[] matches = narrows(terms, metadataVersion) ? lastMatches : null;
+        for (Term term : terms) {
+            matches = term.field() == null ? match(term.text(), matches, scores) : matchField(term, matches, scores);
+        }
+        lastTerms = terms;
+        lastMatches = matches;
+        lastMetadataVersion = metadataVersion;
+
+        Integer[] ranked = new Integer[matches.length];
+        for (int i = 0; i < matches.length; i++) ranked[i] = matches[i];
+        Arrays.sort(ranked, (a, b) -> {
+            if (scores[a] != scores[b]) return Integer.compare(scores[b], scores[a]);
+            if (names[a].length() != names[b].length()) return Integer.compare(names[a].length(), names[b].length());
+            return Integer.compare(a, b);
+        });
+
+        List<ModToggle> result = new ArrayList<>(ranked.length);
+        for (Integer id : ranked) result.add(toggles.get(id));
+        return result;
+    }
+
+    // Splits the query into words, keeping "field:value" words for the metadata index.
+    private static List<Term> parse(String query) {
+        List<Term> terms = new ArrayList<>();
+        for (String token : query.trim().split("\\s+")) {
+            int colon = token.indexOf(':');
+            MetadataSearchIndex.Field field = colon > 0 ? MetadataSearchIndex.Field.parse(token.substring(0, colon).toLowerCase()) : null;
+            if (field == MetadataSearchIndex.Field.ID) {
+                // Ids are indexed whole as well, so keep their dashes and underscores
+                String id = token.substring(colon + 1).toLowerCase();
+                if (!id.isEmpty()) terms.add(new Term(field, id));
+                continue;
+            }
+
+            String words = normalize(field == null ? token : token.substring(colon + 1));
+            if (words.isEmpty()) continue;
+            for (String word : words.split(" ")) terms.add(new Term(field, word));
+        }
+        return terms;
+    }
+
+    // Anything matching the new terms also matched the old ones if each old term was only extended
+    // and kept its typo allowance, so only the previous matches need checking.
+    private boolean narrows(List<Term> terms, int metadataVersion) {
+        if (lastMatches == null || metadataVersion != lastMetadataVersion || terms.size() < lastTerms.size()) return false;
+        for (int i = 0; i < lastTerms.size(); i++) {
+            Term last = lastTerms.get(i);
+            Term term = terms.get(i);
+            if (term.field() != last.field() || !term.text().startsWith(last.text())) return false;
+            if (tolerance(term.text()) != tolerance(last.text())) return false;
+        }
+        return true;
+    }
+
+    // Keeps the entries whose metadata field has a word starting with the term.
+    private int[] matchField(Term term, int[] candidates, int[] scores) {
+        Set<String> files = MetadataSearchIndex.find(term.field(), term.text());
+        int[] pool = candidates != null ? candidates : allIds();
+
+        int[] kept = new int[pool.length];
+        int count = 0;
+        for (int id : pool) {
+            if (files.contains(paths[id])) {
+                scores[id] += FIELD;
+                kept[count++] = id;
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    // Keeps the entries of candidates (or of the whole index when null) that match term, adding to their score.
+    private int[] match(String term, int[] candidates, int[] scores) {
+        int tolerance = tolerance(term);
+        Set<String> metadataFiles = MetadataSearchIndex.find(null, term);
+        int[] pool = candidates != null ? candidates : candidatesFor(term, tolerance, metadataFiles);
+
+        int[] kept = new int[pool.length];
+        int count = 0;
+        for (int id : pool) {
+            int score = score(term, tolerance, id);
+            if (score == 0 && metadataFiles.contains(paths[id])) score = METADATA;
+            if (score > 0) {
+                scores[id] += score;
+                kept[count++] = id;
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    // Entries sharing enough trigrams with the term to be within its typo allowance, plus initials and metadata matches.
+    private int[] candidatesFor(String term, int tolerance, Set<String> metadataFiles) {
+        Set<String> termTrigrams = trigramsOf(term);
+        // A single edit or transposition changes at most four trigrams
+        int required = termTrigrams.size() - 4 * tolerance;
+        if (required <= 0) return allIds();
+
+        int[] shared = new int[names.length];
+        for (String trigram : termTrigrams) {
+            int[] ids = trigrams.get(trigram);
+            if (ids == null) continue;
+            for (int id : ids) shared[id]++;
+        }
+
+        boolean[] selected = new boolean[names.length];
+        for (int id = 0; id < shared.length; id++) {
+            selected[id] = shared[id] >= required || metadataFiles.contains(paths[id]);
+        }
+        int start = firstWithInitials(term);
+        for (int i = start; i < byInitials.length && initials[byInitials[i]].startsWith(term); i++) {
+            selected[byInitials[i]] = true;
+        }
+
+        int count = 0;
+        for (boolean s : selected) if (s) count++;
+        int[] result = new int[count];
+        count = 0;
+        for (int id = 0; id < selected.length; id++) if (selected[id]) result[count++] = id;
+        return result;
+    }
+
+    private int[] allIds() {
+        int[] all = new int[names.length];
+        for (int id = 0; id < all.length; id++) all[id] = id;
+        return all;
+    }
+
+    private int firstWithInitials(String prefix) {
+        int low = 0, high = byInitials.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (initials[byInitials[mid]].compareTo(prefix) < 0) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    private int score(String term, int tolerance, int id) {
+        String name = names[id];
+        int index = name.indexOf(term);
+        if (index == 0) return PREFIX;
+        if (index > 0) return name.charAt(index - 1) == ' ' ? WORD_START : SUBSTRING;
+        if (term.length() > 1 && initials[id].startsWith(term)) return INITIALS;
+        if (tolerance == 0) return 0;
+
+        int distance = distance(term, name);
+        return distance <= tolerance ? FUZZY - 10 * distance : 0;
+    }
+
+    // Fewest edits (insert, delete, substitute, swap neighbours) that make term appear anywhere in text.
+    private int distance(String term, String text) {
+        int m = term.length();
+        if (previous.length < m + 1) {
+            before = new int[m + 1];
+            previous = new int[m + 1];
+            current = new int[m + 1];
+        }
+        for (int i = 0; i <= m; i++) previous[i] = i;
+        int best = previous[m];
+
+        for (int j = 1; j <= text.length(); j++) {
+            char c = text.charAt(j - 1);
+            current[0] = 0; // a match may start anywhere in the text
+            for (int i = 1; i <= m; i++) {
+                int cost = term.charAt(i - 1) == c ? 0 : 1;
+                int value = Math.min(previous[i - 1] + cost, Math.min(previous[i] + 1, current[i - 1] + 1));
+                if (i > 1 && j > 1 && term.charAt(i - 1) == text.charAt(j - 2) && term.charAt(i - 2) == c) {
+                    value = Math.min(value, before[i - 2] + 1);
+                }
+                current[i] = value;
+            }
+            best = Math.min(best, current[m]);
+
+            int[] oldest = before;
+            before = previous;
+            previous = current;
+            current = oldest;
+        }
+        return best;
+    }
+
+    // Short words have to match exactly, longer ones may contain a typo or two.
+    private static int tolerance(String term) {
+        if (term.length() <= 3) return 0;
+        if (term.length() <= 7) return 1;
+        return 2;
+    }
+
+    // Lower case, with punctuation and separators collapsed to single spaces.
+    static String normalize(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(c);
+                space = false;
+            } else if (!space) {
+                builder.append(' ');
+                space = true;
+            }
+        }
+        int length = builder.length();
+        if (length > 0 && builder.charAt(length - 1) == ' ') builder.setLength(length - 1);
+        return builder.toString();
+    }
+
+    private static String initialsOf(String name) {
+        StringBuilder builder = new StringBuilder();
+        for (String word : name.split(" ")) {
+            if (!word.isEmpty()) builder.append(word.charAt(0));
+        }
+        return builder.toString();
+    }
+
+    private static Set<String> trigramsOf(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) result.add(text.substring(i, i + 3));
+        return result;
+    }
+}
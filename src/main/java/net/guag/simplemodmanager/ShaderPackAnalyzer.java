@@ -0,0 +1,329 @@
+package net.guag.simplemodmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Works out roughly how heavy a shader pack is without extracting it. The
+ * program list under shaders/ gives the composite and deferred passes and
+ * the optional stages; shaders.properties gives the custom textures, images
+ * and uniforms; the sources give the default shadow map resolution. Zips are
+ * read through {@link ZipIndex}, one entry at a time.
+ *
+ * Results are cached in config/simplemodmanager_shaders.json by full path.
+ * A pack whose size and mtime are unchanged is not touched at all; otherwise
+ * its fingerprint (the hash of a zip's central directory, or of the file list of
+ * a folder pack) is compared first, so a renamed or re-downloaded copy of a
+ * known pack isn't analyzed again.
+ */
+public class ShaderPackAnalyzer {
+    private static final File CACHE_FILE = new File(MinecraftClient.getInstance().runDirectory, "config/simplemodmanager_shaders.json");
+
+    // OptiFine's default when a pack has shadow programs but doesn't set the constant
+    private static final int DEFAULT_SHADOW_RESOLUTION = 1024;
+    private static final Pattern PASS_PROGRAM = Pattern.compile("^(composite|deferred)(\\d*)(_[a-z])?\\.(fsh|csh)$");
+    private static final Pattern SHADOW_RESOLUTION = Pattern.compile(
+            "(?:const\\s+int\\s+shadowMapResolution\\s*=|#define\\s+shadowMapResolution)\\s*(\\d+)");
+    private static final Set<String> SOURCE_EXTENSIONS = Set.of(".glsl", ".fsh", ".vsh", ".gsh", ".csh", ".inc");
+
+    public enum Tier {
+        LIGHT("Light", 0xFF55FF55), MEDIUM("Medium", 0xFFAAAAAA), HEAVY("Heavy", 0xFFFFFF55), EXTREME("Extreme", 0xFFFF5555);
+
+        public final String label;
+        public final int color;
+
+        Tier(String label, int color) {
+            this.label = label;
+            this.color = color;
+        }
+    }
+
+    public record Analysis(long size, long lastModified, String fingerprint, int shadowMapResolution,
+                           int compositePasses, int deferredPasses, List<String> features, Tier tier) {
+        public Analysis {
+            features = features == null ? List.of() : List.copyOf(features);
+        }
+
+        Analysis withFile(long size, long lastModified) {
+            return new Analysis(size, lastModified, fingerprint, shadowMapResolution, compositePasses, deferredPasses, features, tier);
+        }
+    }
+
+    private static final Map<String, Analysis> cache = new ConcurrentHashMap<>();
+    private static boolean loaded = false;
+    private static volatile boolean dirty = false;
+
+    // The pack's analysis, or null if it couldn't be read.
+    public static Analysis get(ModToggle pack) {
+        load();
+        String key = pack.getFile().getAbsolutePath();
+        Analysis cached = cache.get(key);
+        if (cached != null && cached.size() == pack.getSize() && cached.lastModified() == pack.getLastModified()) {
+            return cached;
+        }
+
+        try {
+            File file = pack.getFile();
+            String fingerprint = file.isDirectory() ? folderFingerprint(file) : zipFingerprint(file);
+            Analysis analysis = findByFingerprint(fingerprint);
+            analysis = analysis != null
+                    ? analysis.withFile(pack.getSize(), pack.getLastModified())
+                    : analyze(file, pack.getSize(), pack.getLastModified(), fingerprint);
+            cache.put(key, analysis);
+            dirty = true;
+            return analysis;
+        } catch (Exception e) {
+            System.err.println("Could not analyze shader pack " + pack.getFile().getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Analysis findByFingerprint(String fingerprint) {
+        for (Analysis analysis : cache.values()) {
+            if (fingerprint.equals(analysis.fingerprint())) return analysis;
+        }
+        return null;
+    }
+
+    // One way into a pack's files, whether it is a zip or a folder
+    private interface PackFiles {
+        List<String> names() throws IOException;
+        // The file's bytes, or null if the pack has no such file
+        byte[] read(String name) throws IOException;
+    }
+
+    private static Analysis analyze(File file, long size, long lastModified, String fingerprint) throws IOException {
+        if (file.isDirectory()) {
+            Path root = file.toPath();
+            return analyze(new PackFiles() {
+                public List<String> names() throws IOException {
+                    Path shaders = root.resolve("shaders");
+                    if (!Files.isDirectory(shaders)) return List.of();
+                    try (Stream<Path> paths = Files.walk(shaders)) {
+                        return paths.filter(Files::isRegularFile)
+                                .map(path -> root.relativize(path).toString().replace('\\', '/')).toList();
+                    }
+                }
+
+                public byte[] read(String name) throws IOException {
+                    // Null for a missing file, like the zip branch
+                    Path path = root.resolve(name);
+                    return Files.isRegularFile(path) ? Files.readAllBytes(path) : null;
+                }
+            }, size, lastModified, fingerprint);
+        }
+
+        try (ZipIndex zip = ZipIndex.open(file)) {
+            Map<String, ZipIndex.Entry> entries = new HashMap<>();
+            for (ZipIndex.Entry entry : zip.list("shaders/", "")) entries.put(entry.name(), entry);
+            return analyze(new PackFiles() {
+                public List<String> names() {
+                    return new ArrayList<>(entries.keySet());
+                }
+
+                public byte[] read(String name) throws IOException {
+                    ZipIndex.Entry entry = entries.get(name);
+                    return entry == null ? null : zip.read(entry);
+                }
+            }, size, lastModified, fingerprint);
+        }
+    }
+
+    private static Analysis analyze(PackFiles files, long size, long lastModified, String fingerprint) throws IOException {
+        List<String> names = files.names();
+
+        // Programs of the overworld: shaders/ itself, or world0/ for packs that only ship per-dimension folders
+        String programFolder = "shaders/";
+        boolean rootPrograms = names.stream().anyMatch(name -> isProgram(name, "shaders/"));
+        if (!rootPrograms && names.stream().anyMatch(name -> isProgram(name, "shaders/world0/"))) {
+            programFolder = "shaders/world0/";
+        }
+
+        Set<String> composites = new TreeSet<>();
+        Set<String> deferreds = new TreeSet<>();
+        boolean shadowPrograms = false;
+        boolean compute = false;
+        boolean distantHorizons = false;
+        for (String name : names) {
+            if (name.endsWith(".csh")) compute = true;
+            if (!isProgram(name, programFolder)) continue;
+            String program = name.substring(programFolder.length());
+            Matcher pass = PASS_PROGRAM.matcher(program);
+            if (pass.matches()) {
+                (pass.group(1).equals("composite") ? composites : deferreds).add(pass.group(2));
+            }
+            if (program.startsWith("shadow.") || program.startsWith("shadow_")) shadowPrograms = true;
+            if (program.startsWith("dh_")) distantHorizons = true;
+        }
+
+        Properties properties = new Properties();
+        byte[] propertiesBytes = files.read("shaders/shaders.properties");
+        if (propertiesBytes != null) {
+            // Preprocessor lines start with '#' and are skipped as comments
+            properties.load(new ByteArrayInputStream(propertiesBytes));
+        }
+
+        int shadowResolution = 0;
+        if (shadowPrograms) {
+            shadowResolution = findShadowResolution(files, names);
+            if (shadowResolution <= 0) shadowResolution = DEFAULT_SHADOW_RESOLUTION;
+        }
+
+        List<String> features = new ArrayList<>();
+        if (shadowPrograms) features.add("shadows");
+        if (compute) features.add("compute shaders");
+        if (distantHorizons) features.add("Distant Horizons");
+        boolean customImages = false;
+        boolean customTextures = false;
+        boolean customUniforms = false;
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("image.") || key.startsWith("bufferObject.")) customImages = true;
+            if (key.startsWith("texture.")) customTextures = true;
+            if (key.startsWith("uniform.") || key.startsWith("variable.")) customUniforms = true;
+        }
+        if (customImages) features.add("custom images");
+        if (customTextures) features.add("custom textures");
+        if (customUniforms) features.add("custom uniforms");
+        String required = properties.getProperty("iris.features.required");
+        if (required != null && !required.isBlank()) features.add("requires " + required.trim().toLowerCase().replace('_', ' '));
+
+        Tier tier = tierOf(composites.size(), deferreds.size(), shadowResolution, compute, customImages);
+        return new Analysis(size, lastModified, fingerprint, shadowResolution, composites.size(), deferreds.size(), features, tier);
+    }
+
+    private static boolean isProgram(String name, String folder) {
+        return name.startsWith(folder) && name.indexOf('/', folder.length()) < 0
+                && (name.endsWith(".fsh") || name.endsWith(".vsh") || name.endsWith(".csh") || name.endsWith(".gsh"));
+    }
+
+    // The default shadowMapResolution, looking in settings and shadow sources before the rest.
+    private static int findShadowResolution(PackFiles files, List<String> names) throws IOException {
+        List<String> sources = new ArrayList<>();
+        for (String name : names) {
+            int dot = name.lastIndexOf('.');
+            if (dot >= 0 && SOURCE_EXTENSIONS.contains(name.substring(dot))) sources.add(name);
+        }
+        sources.sort(Comparator.comparing((String name) -> {
+            String lower = name.toLowerCase();
+            return lower.contains("setting") || lower.contains("shadow") ? 0 : 1;
+        }).thenComparing(name -> name));
+
+        for (String source : sources) {
+            byte[] bytes = files.read(source);
+            if (bytes == null) continue;
+            Matcher match = SHADOW_RESOLUTION.matcher(new String(bytes, StandardCharsets.UTF_8));
+            if (match.find()) {
+                try {
+                    return Integer.parseInt(match.group(1));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        return 0;
+    }
+
+    // Each full-screen pass costs about the same; the shadow map costs with its area, compute and images add on top.
+    private static Tier tierOf(int composites, int deferreds, int shadowResolution, boolean compute, boolean customImages) {
+        double score = composites + deferreds;
+        if (shadowResolution > 0) score += 2.0 * shadowResolution * shadowResolution / (1024.0 * 1024.0);
+        if (compute) score += 3;
+        if (customImages) score += 2;
+
+        if (score < 8) return Tier.LIGHT;
+        if (score < 16) return Tier.MEDIUM;
+        if (score < 28) return Tier.HEAVY;
+        return Tier.EXTREME;
+    }
+
+    private static String zipFingerprint(File file) throws IOException {
+        try (ZipIndex zip = ZipIndex.open(file)) {
+            return zip.directoryFingerprint();
+        }
+    }
+
+    // Hash of the path, size and mtime of every file under shaders/, since a folder's own mtime misses deep edits.
+    private static String folderFingerprint(File file) throws IOException {
+        Path root = file.toPath();
+        Path shaders = root.resolve("shaders");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (Files.isDirectory(shaders)) {
+                List<Path> paths;
+                try (Stream<Path> walk = Files.walk(shaders)) {
+                    paths = walk.filter(Files::isRegularFile).sorted().toList();
+                }
+                for (Path path : paths) {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    String line = root.relativize(path) + ":" + attrs.size() + ":" + attrs.lastModifiedTime().toMillis() + "\n";
+                    digest.update(line.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Drops entries for packs that are no longer installed.
+    public static synchronized void retainOnly(Collection<File> files) {
+        load();
+        Set<String> paths = new HashSet<>();
+        for (File file : files) paths.add(file.getAbsolutePath());
+        if (cache.keySet().retainAll(paths)) dirty = true;
+    }
+
+    public static synchronized void save() {
+        if (!dirty) return;
+        try {
+            CACHE_FILE.getParentFile().mkdirs(); // Make sure config dir exists
+            try (FileWriter writer = new FileWriter(CACHE_FILE)) {
+                new Gson().toJson(new HashMap<>(cache), writer);
+            }
+            dirty = false;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!CACHE_FILE.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(CACHE_FILE))) {
+            Map<String, Analysis> stored = new Gson().fromJson(reader, new TypeToken<Map<String, Analysis>>() {}.getType());
+            if (stored != null) cache.putAll(stored);
+        } catch (Exception e) {
+            // A broken cache is just analyzed again
+            e.printStackTrace();
+        }
+    }
+}
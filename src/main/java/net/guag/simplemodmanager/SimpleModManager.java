@@ -1,6 +1,7 @@
 package net.guag.simplemodmanager;
 
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
 import net.minecraft.client.MinecraftClient;
@@ -11,7 +12,6 @@ import org.lwjgl.glfw.GLFW;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.io.File;
 
 import net.fabricmc.api.ModInitializer;
 
@@ -39,34 +39,41 @@ public class SimpleModManager implements ModInitializer, ClientModInitializer {
 				KeyBinding.Category.create(Identifier.of("simplemodmanager:keybinds"))
 		));
 
+		// The startup profiler started at preLaunch covers everything up to the title screen.
+		ClientLifecycleEvents.CLIENT_STARTED.register(client -> StartupProfiler.stop());
+
+		// Finish (or undo) an apply that was interrupted by a crash before anything scans the folders.
+		ApplyTransaction.recover();
+
+		// Keep the mods/resource pack/shader pack inventory live so opening the screen does no I/O.
+		InventoryWatcher.start();
+
 		// On each client tick, if F8 is pressed and no screen is open, open the GUI.
 		ClientTickEvents.END_CLIENT_TICK.register(client -> {
 			while (openUIBinding.wasPressed()) {
 				MinecraftClient mc = MinecraftClient.getInstance();
 				if (mc.currentScreen == null) {
-					// Pass the client and the hardcoded mod toggles (loaded from file folders)
-					mc.setScreen(new ModManagerScreen(mc, ModUtils.getModToggles(), ModUtils.getResourceToggles(), ModUtils.getShaderToggles()));
+					// Pass the client and the live inventory kept by the folder watcher
+					mc.setScreen(new ModManagerScreen(mc, InventoryWatcher.current()));
 				}
 			}
 		});
 	}
 
 	public static List<String> getAvailableShaderpacks() {
-		File folder = new File(MinecraftClient.getInstance().runDirectory, "shaderpacks");
-		File[] files = folder.listFiles((dir, name) -> name.endsWith(".zip"));
-		List<String> result = new ArrayList<>();
-		if (files != null) {
-			for (File file : files) result.add(file.getName());
-		}
-		return result;
+		return getActiveZipNames(InventoryScanner.Category.SHADERPACKS);
 	}
 
 	public static List<String> getAvailableResourcepacks() {
-		File folder = new File(MinecraftClient.getInstance().runDirectory, "resourcepacks");
-		File[] files = folder.listFiles((dir, name) -> name.endsWith(".zip"));
+		return getActiveZipNames(InventoryScanner.Category.RESOURCEPACKS);
+	}
+
+	// Reuses the last inventory scan instead of listing the folder again.
+	private static List<String> getActiveZipNames(InventoryScanner.Category category) {
 		List<String> result = new ArrayList<>();
-		if (files != null) {
-			for (File file : files) result.add(file.getName());
+		for (InventoryScanner.Entry entry : InventoryScanner.latest().get(category)) {
+			String name = entry.file().getName();
+			if (entry.enabled() && name.endsWith(".zip")) result.add(name);
 		}
 		return result;
 	}
@@ -76,8 +83,14 @@ public class SimpleModManager implements ModInitializer, ClientModInitializer {
 		System.out.println("Shaderpack set to: " + name);
 	}
 
+	// Enables the pack in the game's pack selection; the reload happens on the render thread.
 	public static void setResourcepack(String name) {
 		currentResourcepack = name;
+		MinecraftClient client = MinecraftClient.getInstance();
+		client.execute(() -> {
+			ResourceUtils.queueResourcePack(name, true);
+			ResourceUtils.applyQueued(client);
+		});
 		System.out.println("Resourcepack set to: " + name);
 	}
 
@@ -0,0 +1,170 @@
+package net.guag.simplemodmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.entrypoint.PreLaunchEntrypoint;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Works out which mod jars make the game slow to start. From the preLaunch
+ * entrypoint until the client has started, a daemon thread samples the
+ * startup thread's stack every few milliseconds and charges each sample to
+ * the innermost frame that belongs to a jar in the mods folder. Frames of
+ * mixin handlers count for the mod that wrote them; time spent inside the
+ * mixin transformer gets its own bucket. The startup thread itself does no
+ * extra work, so the cost is one stack walk per sample.
+ *
+ * Each launch is kept in config/simplemodmanager_startup.json, newest first,
+ * as estimated milliseconds per jar path (see {@link ModClassIndex#keyOf}).
+ *
+ * Disable with -Dsimplemodmanager.startupProfiler=false.
+ */
+public class StartupProfiler implements PreLaunchEntrypoint {
+    public static final boolean ENABLED = !"false".equals(System.getProperty("simplemodmanager.startupProfiler"));
+    public static final String MIXIN_BUCKET = "(mixin transformer)";
+    public static final String OTHER_BUCKET = "(minecraft and libraries)";
+
+    private static final long INTERVAL_MS = 5;
+    private static final int HISTORY = 10;
+
+    public record Launch(long startedAt, long totalMs, Map<String, Long> jarMs) {}
+
+    private static volatile boolean running = false;
+    private static Thread sampler;
+    private static long startedAt;
+    private static List<Launch> history;
+
+    @Override
+    public void onPreLaunch() {
+        if (!ENABLED || running) return;
+        Thread startupThread = Thread.currentThread();
+        startedAt = System.currentTimeMillis();
+        running = true;
+
+        sampler = new Thread(() -> sample(startupThread), "SimpleModManager startup profiler");
+        sampler.setDaemon(true);
+        sampler.setPriority(Thread.MAX_PRIORITY);
+        sampler.start();
+    }
+
+    // Stops sampling and stores the launch; called once the client has started.
+    public static void stop() {
+        if (!running) return;
+        running = false;
+        // The sampler saves its own results once it notices
+    }
+
+    // Launches recorded so far, newest first.
+    public static synchronized List<Launch> history() {
+        if (history == null) history = load();
+        return history;
+    }
+
+    // Estimated startup milliseconds of a jar in the latest launch, or -1 if it wasn't measured.
+    public static long latestMs(String jar) {
+        List<Launch> launches = history();
+        if (launches.isEmpty()) return -1;
+        Long ms = launches.getFirst().jarMs().get(jar);
+        return ms == null ? -1 : ms;
+    }
+
+    // The same jar's milliseconds in each recorded launch, newest first (0 when absent).
+    public static List<Long> historyMs(String jar) {
+        List<Long> result = new ArrayList<>();
+        for (Launch launch : history()) result.add(launch.jarMs().getOrDefault(jar, 0L));
+        return result;
+    }
+
+    private static void sample(Thread target) {
+        Map<String, Integer> samples = new HashMap<>();
+        // Where each class and mixin owner comes from; resolved once, on this thread
+        Map<String, String> bucketOfClass = new HashMap<>();
+        Map<String, String> bucketOfMod = new HashMap<>();
+        Path modsFolder = FabricLoader.getInstance().getGameDir().resolve("mods").toAbsolutePath().normalize();
+
+        while (running && target.isAlive()) {
+            StackTraceElement[] stack = target.getStackTrace();
+            samples.merge(attribute(stack, bucketOfClass, bucketOfMod, modsFolder), 1, Integer::sum);
+            try {
+                Thread.sleep(INTERVAL_MS);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        running = false;
+
+        long totalMs = System.currentTimeMillis() - startedAt;
+        int totalSamples = samples.values().stream().mapToInt(Integer::intValue).sum();
+        Map<String, Long> jarMs = new LinkedHashMap<>();
+        samples.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(entry -> jarMs.put(entry.getKey(), totalSamples == 0 ? 0 : entry.getValue() * totalMs / totalSamples));
+        record(new Launch(startedAt, totalMs, jarMs));
+    }
+
+    // The innermost frame that belongs to a mod jar (or the mixin transformer) decides where a sample goes.
+    private static String attribute(StackTraceElement[] stack, Map<String, String> bucketOfClass,
+                                    Map<String, String> bucketOfMod, Path modsFolder) {
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (className.startsWith("org.spongepowered.asm.mixin.transformer.")) return MIXIN_BUCKET;
+
+            String modId = ModClassIndex.mixinOwner(frame.getMethodName());
+            if (modId != null) {
+                String bucket = bucketOfMod.computeIfAbsent(modId, ModClassIndex::jarOfMod);
+                if (!bucket.isEmpty()) return bucket;
+            }
+
+            String bucket = bucketOfClass.computeIfAbsent(className, name -> ModClassIndex.jarOfLoadedClass(name, modsFolder));
+            if (!bucket.isEmpty()) return bucket;
+        }
+        return OTHER_BUCKET;
+    }
+
+    private static synchronized void record(Launch launch) {
+        List<Launch> launches = new ArrayList<>(history());
+        launches.addFirst(launch);
+        while (launches.size() > HISTORY) launches.removeLast();
+        history = launches;
+
+        File file = historyFile();
+        try {
+            file.getParentFile().mkdirs(); // Make sure config dir exists
+            try (FileWriter writer = new FileWriter(file)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(launches, writer);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        System.out.println("Simple Mod Manager: startup took " + launch.totalMs() + " ms");
+    }
+
+    private static List<Launch> load() {
+        File file = historyFile();
+        if (!file.exists()) return new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            List<Launch> launches = new Gson().fromJson(reader, new TypeToken<List<Launch>>() {}.getType());
+            return launches != null ? launches : new ArrayList<>();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    // Not under MinecraftClient.runDirectory like the other files: the client doesn't exist yet at preLaunch
+    private static File historyFile() {
+        return FabricLoader.getInstance().getConfigDir().resolve("simplemodmanager_startup.json").toFile();
+    }
+}
@@ -0,0 +1,198 @@
+package net.guag.simplemodmanager;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Estimates how much texture memory a resource pack adds, from the width and
+ * height in the IHDR header of each PNG under assets/. No image is decoded:
+ * in a zip only the first bytes of each entry are inflated (see
+ * {@link ZipIndex#readHead}), in a folder only the first bytes of each file
+ * are read. Headers are read in parallel batches, and results are cached in
+ * config/simplemodmanager_textures.json by full path, size and mtime.
+ *
+ * A texture counts as width x height x 4 bytes, plus a third for the mipmaps
+ * of block and item textures. Animated textures count in full, like the game
+ * keeps them.
+ */
+public class TextureCostEstimator {
+    private static final File CACHE_FILE = new File(MinecraftClient.getInstance().runDirectory, "config/simplemodmanager_textures.json");
+    // Headers read per background task
+    private static final int BATCH = 256;
+    // PNG signature (8) + IHDR length and type (8) + width and height (8)
+    private static final int HEADER_BYTES = 24;
+
+    public record Estimate(long size, long lastModified, int textures, long bytes, int largestSide) {
+        public static final Estimate NONE = new Estimate(-1, -1, 0, 0, 0);
+    }
+
+    private static final Map<String, Estimate> cache = new ConcurrentHashMap<>();
+    private static boolean loaded = false;
+    private static volatile boolean dirty = false;
+
+    // The pack's estimate, from the cache if the pack is unchanged since it was last measured.
+    public static Estimate get(ModToggle pack) {
+        load();
+        String key = pack.getFile().getAbsolutePath();
+        Estimate cached = cache.get(key);
+        if (cached != null && cached.size() == pack.getSize() && cached.lastModified() == pack.getLastModified()) {
+            return cached;
+        }
+
+        Estimate estimate;
+        try {
+            estimate = measure(pack.getFile(), pack.getSize(), pack.getLastModified());
+        } catch (Exception e) {
+            System.err.println("Could not estimate textures of " + pack.getFile().getName() + ": " + e.getMessage());
+            return Estimate.NONE;
+        }
+        cache.put(key, estimate);
+        dirty = true;
+        return estimate;
+    }
+
+    private static Estimate measure(File pack, long size, long lastModified) throws IOException {
+        Tally total = new Tally();
+        if (pack.isDirectory()) {
+            Path assets = pack.toPath().resolve("assets");
+            if (!Files.isDirectory(assets)) return new Estimate(size, lastModified, 0, 0, 0);
+            List<Path> images;
+            try (Stream<Path> paths = Files.walk(assets)) {
+                images = paths.filter(path -> path.getFileName().toString().endsWith(".png")).toList();
+            }
+            inBatches(images, batch -> {
+                Tally tally = new Tally();
+                for (Path image : batch) {
+                    try (InputStream in = Files.newInputStream(image)) {
+                        tally.add(pack.toPath().relativize(image).toString().replace('\\', '/'), in.readNBytes(HEADER_BYTES));
+                    }
+                }
+                return tally;
+            }, total);
+        } else {
+            try (ZipIndex zip = ZipIndex.open(pack)) {
+                List<ZipIndex.Entry> images = zip.list("assets/", ".png");
+                inBatches(images, batch -> {
+                    Tally tally = new Tally();
+                    for (ZipIndex.Entry image : batch) tally.add(image.name(), zip.readHead(image, HEADER_BYTES));
+                    return tally;
+                }, total);
+            }
+        }
+        return new Estimate(size, lastModified, total.textures, total.bytes, total.largestSide);
+    }
+
+    private interface BatchReader<T> {
+        Tally read(List<T> batch) throws IOException;
+    }
+
+    // Splits the images into batches read concurrently on the background executor and sums them up.
+    private static <T> void inBatches(List<T> images, BatchReader<T> reader, Tally total) throws IOException {
+        List<CompletableFuture<Tally>> batches = new ArrayList<>();
+        for (int start = 0; start < images.size(); start += BATCH) {
+            List<T> batch = images.subList(start, Math.min(images.size(), start + BATCH));
+            batches.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return reader.read(batch);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, BackgroundTasks.EXECUTOR));
+        }
+        try {
+            for (CompletableFuture<Tally> batch : batches) total.add(batch.join());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    private static final class Tally {
+        int textures;
+        long bytes;
+        int largestSide;
+
+        void add(String path, byte[] header) {
+            // 0x89 'P' 'N' 'G' ... then the IHDR chunk, which the format requires to come first
+            if (header.length < HEADER_BYTES || header[0] != (byte) 0x89 || header[1] != 'P'
+                    || header[12] != 'I' || header[13] != 'H' || header[14] != 'D' || header[15] != 'R') {
+                return;
+            }
+            long width = readInt(header, 16) & 0xFFFFFFFFL;
+            long height = readInt(header, 20) & 0xFFFFFFFFL;
+            long pixels = width * height * 4;
+            // Block and item textures are stitched into mipmapped atlases
+            if (path.contains("/textures/block/") || path.contains("/textures/item/")) pixels += pixels / 3;
+
+            textures++;
+            bytes += pixels;
+            largestSide = (int) Math.max(largestSide, Math.max(width, height));
+        }
+
+        void add(Tally other) {
+            textures += other.textures;
+            bytes += other.bytes;
+            largestSide = Math.max(largestSide, other.largestSide);
+        }
+
+        private static int readInt(byte[] bytes, int offset) {
+            return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                    | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+        }
+    }
+
+    // Drops entries for packs that are no longer installed.
+    public static synchronized void retainOnly(Collection<File> files) {
+        load();
+        Set<String> paths = new HashSet<>();
+        for (File file : files) paths.add(file.getAbsolutePath());
+        if (cache.keySet().retainAll(paths)) dirty = true;
+    }
+
+    public static synchronized void save() {
+        if (!dirty) return;
+        try {
+            CACHE_FILE.getParentFile().mkdirs(); // Make sure config dir exists
+            try (FileWriter writer = new FileWriter(CACHE_FILE)) {
+                new Gson().toJson(new HashMap<>(cache), writer);
+            }
+            dirty = false;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static synchronized void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!CACHE_FILE.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(CACHE_FILE))) {
+            Map<String, Estimate> stored = new Gson().fromJson(reader, new TypeToken<Map<String, Estimate>>() {}.getType());
+            if (stored != null) cache.putAll(stored);
+        } catch (Exception e) {
+            // A broken cache is just measured again
+            e.printStackTrace();
+        }
+    }
+}
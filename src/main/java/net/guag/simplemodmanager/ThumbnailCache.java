@@ -0,0 +1,252 @@
+package net.guag.simplemodmanager;
+
+import net.minecraft.client.MinecraftClient;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Already downscaled icons stored in one file in the config folder, keyed the
+ * same way as {@link IconCache} (file name, size and mtime). The file is
+ * memory-mapped, so icons of unchanged mods load without opening any archive,
+ * and thumbnails only stay on the heap until the next save writes them out.
+ * Files known to have no icon are stored too, so they aren't probed again.
+ *
+ * Unlike mods and packs (see {@link ZipIndex}), this file can be mapped: only
+ * this class writes it, and never while it is mapped. Each save goes to a new
+ * generation, simplemodmanager_thumbnails.<n>.bin, which is mapped in place of
+ * the old one; older generations are deleted as soon as the system lets go of
+ * them (on Windows not before their mapping is collected), or on next launch.
+ *
+ * Layout: magic, version, cell size, entry count, then per entry the key
+ * (length-prefixed UTF-8), a has-icon flag and cell size squared ARGB ints.
+ */
+public class ThumbnailCache {
+    private static final File CONFIG_FOLDER = new File(MinecraftClient.getInstance().runDirectory, "config");
+    private static final String PREFIX = "simplemodmanager_thumbnails.";
+    private static final String SUFFIX = ".bin";
+    private static final int MAGIC = 0x534D4D54; // "SMMT"
+    private static final int VERSION = 1;
+    // Wait for a burst of new icons to finish before rewriting the file
+    private static final long SAVE_DELAY_MS = 2000;
+
+    private static MappedByteBuffer mapped;
+    // Generation of the mapped file (0 for none), and the newest one a save has started writing
+    private static int generation = 0;
+    private static int newestGeneration = 0;
+    // Older generations that couldn't be deleted yet because they were still mapped
+    private static final Set<File> stale = new HashSet<>();
+    // Offset of each entry's pixels in the mapped file, or -1 for "no icon"
+    private static final Map<String, Integer> mappedOffsets = new HashMap<>();
+    // Thumbnails found this session that aren't in the file yet (null pixels = no icon)
+    private static final Map<String, int[]> added = new HashMap<>();
+    private static boolean loaded = false;
+    private static boolean saveScheduled = false;
+
+    public static synchronized boolean contains(String key) {
+        load();
+        return added.containsKey(key) || mappedOffsets.containsKey(key);
+    }
+
+    // Returns the ARGB pixels for this key, or null if there is no thumbnail or the file has no icon.
+    public static synchronized int[] get(String key) {
+        load();
+        if (added.containsKey(key)) return added.get(key);
+
+        Integer offset = mappedOffsets.get(key);
+        if (offset == null || offset < 0) return null;
+
+        int[] pixels = new int[IconAtlas.CELL_SIZE * IconAtlas.CELL_SIZE];
+        IntBuffer buffer = mapped.duplicate().position(offset).slice().asIntBuffer();
+        buffer.get(pixels);
+        return pixels;
+    }
+
+    public static synchronized void put(String key, int[] pixels) {
+        load();
+        added.put(key, pixels);
+        if (!saveScheduled) {
+            saveScheduled = true;
+            CompletableFuture.runAsync(ThumbnailCache::save,
+                    CompletableFuture.delayedExecutor(SAVE_DELAY_MS, TimeUnit.MILLISECONDS, BackgroundTasks.EXECUTOR));
+        }
+    }
+
+    private static void load() {
+        if (loaded) return;
+        loaded = true;
+
+        // The newest generation that reads back; one a save didn't finish falls through to the one before
+        TreeMap<Integer, File> generations = generations();
+        for (Map.Entry<Integer, File> entry : generations.descendingMap().entrySet()) {
+            if (map(entry.getValue())) {
+                generation = entry.getKey();
+                break;
+            }
+        }
+        newestGeneration = generations.isEmpty() ? 0 : generations.lastKey();
+        // Nothing but the chosen file is mapped yet, so the rest can go, including the single file of older versions
+        for (Map.Entry<Integer, File> entry : generations.entrySet()) {
+            if (entry.getKey() != generation) entry.getValue().delete();
+        }
+        new File(CONFIG_FOLDER, PREFIX + "bin").delete();
+        new File(CONFIG_FOLDER, PREFIX + "bin.tmp").delete();
+    }
+
+    // Cache files in the config folder by generation.
+    private static TreeMap<Integer, File> generations() {
+        TreeMap<Integer, File> result = new TreeMap<>();
+        File[] files = CONFIG_FOLDER.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX)
+                && name.length() > PREFIX.length() + SUFFIX.length());
+        if (files == null) return result;
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                result.put(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+            } catch (NumberFormatException ignored) {
+                // Not one of ours
+            }
+        }
+        return result;
+    }
+
+    private static File generationFile(int generation) {
+        return new File(CONFIG_FOLDER, PREFIX + generation + SUFFIX);
+    }
+
+    // Reads the entry offsets of a cache file and keeps it mapped for get(); false if the file can't be used.
+    private static boolean map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != IconAtlas.CELL_SIZE) {
+                // Old format or a different icon resolution; rebuilt as icons load
+                return false;
+            }
+
+            int pixelBytes = IconAtlas.CELL_SIZE * IconAtlas.CELL_SIZE * 4;
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] keyBytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(keyBytes);
+                boolean hasIcon = buffer.get() != 0;
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+                if (hasIcon) {
+                    mappedOffsets.put(key, buffer.position());
+                    buffer.position(buffer.position() + pixelBytes);
+                } else {
+                    mappedOffsets.put(key, -1);
+                }
+            }
+            mapped = buffer;
+            return true;
+        } catch (Exception e) {
+            // A truncated or corrupt file is just ignored
+            e.printStackTrace();
+            mappedOffsets.clear();
+            mapped = null;
+            return false;
+        }
+    }
+
+    // Writes everything known to a new generation, dropping thumbnails of files that are gone, then serves the
+    // new thumbnails from the file too, so the heap only holds the ones found since the last save.
+    private static void save() {
+        Map<String, int[]> entries = new HashMap<>();
+        Map<String, int[]> saved;
+        File file;
+        int next;
+        synchronized (ThumbnailCache.class) {
+            saveScheduled = false;
+            next = ++newestGeneration;
+            file = generationFile(next);
+            Set<String> installed = new HashSet<>();
+            for (InventoryScanner.Category category : InventoryScanner.Category.values()) {
+                for (InventoryScanner.Entry entry : InventoryScanner.latest().get(category)) {
+                    installed.add(entry.file().getName());
+                }
+            }
+            for (String key : mappedOffsets.keySet()) {
+                if (installed.contains(fileNameOf(key))) entries.put(key, get(key));
+            }
+            for (Map.Entry<String, int[]> entry : added.entrySet()) {
+                if (installed.contains(fileNameOf(entry.getKey()))) entries.put(entry.getKey(), entry.getValue());
+            }
+            saved = new HashMap<>(added);
+        }
+
+        try {
+            CONFIG_FOLDER.mkdirs(); // Make sure config dir exists
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(IconAtlas.CELL_SIZE);
+                out.writeInt(entries.size());
+                ByteBuffer pixelBytes = ByteBuffer.allocate(IconAtlas.CELL_SIZE * IconAtlas.CELL_SIZE * 4);
+                for (Map.Entry<String, int[]> entry : entries.entrySet()) {
+                    byte[] keyBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(keyBytes.length);
+                    out.write(keyBytes);
+                    out.writeBoolean(entry.getValue() != null);
+                    if (entry.getValue() != null) {
+                        pixelBytes.clear();
+                        pixelBytes.asIntBuffer().put(entry.getValue());
+                        out.write(pixelBytes.array());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The mapped generation is untouched and the thumbnails stay on the heap for the next save
+            System.err.println("Could not save thumbnail cache: " + e.getMessage());
+            file.delete();
+            return;
+        }
+        remap(file, next, saved);
+    }
+
+    private static synchronized void remap(File file, int next, Map<String, int[]> saved) {
+        // A save that started later already finished; this one is out of date
+        if (next < generation) {
+            file.delete();
+            return;
+        }
+        MappedByteBuffer previous = mapped;
+        Map<String, Integer> previousOffsets = new HashMap<>(mappedOffsets);
+        mappedOffsets.clear();
+        if (!map(file)) {
+            mapped = previous;
+            mappedOffsets.putAll(previousOffsets);
+            file.delete();
+            return;
+        }
+        if (generation > 0) stale.add(generationFile(generation));
+        generation = next;
+        // Only the arrays that were written; thumbnails put while the file was written stay until the next save
+        for (Map.Entry<String, int[]> entry : saved.entrySet()) added.remove(entry.getKey(), entry.getValue());
+
+        // On Linux and macOS a mapped file can be deleted; on Windows it waits until its buffer is collected
+        stale.removeIf(old -> old.delete() || !old.exists());
+    }
+
+    // Keys are "name:size:mtime"; names can contain ':' themselves, so cut from the end.
+    private static String fileNameOf(String key) {
+        int mtime = key.lastIndexOf(':');
+        int size = mtime > 0 ? key.lastIndexOf(':', mtime - 1) : -1;
+        return size > 0 ? key.substring(0, size) : key;
+    }
+}
@@ -0,0 +1,141 @@
+package net.guag.simplemodmanager;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.server.integrated.IntegratedServer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Samples the render thread and, in singleplayer, the integrated server
+ * thread while the game is running, and charges each sample to the mod jar
+ * whose code is innermost on the stack (see {@link ModClassIndex}). Samples
+ * where a thread is parked or sleeping are idle and left out, so a mod's
+ * share is its part of the time the thread was actually busy.
+ *
+ * Started and stopped from the manager screen; off by default. One sample
+ * costs a stack walk of each thread every {@link #INTERVAL_MS} ms.
+ */
+public class TickProfiler {
+    private static final long INTERVAL_MS = 10;
+
+    public enum Side { CLIENT, SERVER }
+
+    // Share of the busy samples of each thread, per jar path (see ModClassIndex.keyOf)
+    public record Result(long clientSamples, long serverSamples, Map<String, Double> clientShare, Map<String, Double> serverShare) {
+        public static final Result EMPTY = new Result(0, 0, Map.of(), Map.of());
+
+        // Combined share of both threads, weighted by how busy each was.
+        public double share(String jar) {
+            long total = clientSamples + serverSamples;
+            if (total == 0) return 0;
+            return (clientShare.getOrDefault(jar, 0.0) * clientSamples + serverShare.getOrDefault(jar, 0.0) * serverSamples) / total;
+        }
+    }
+
+    private static final Object LOCK = new Object();
+    private static volatile boolean running = false;
+    // Bumped on every start, so a sampler left over from a quick stop and start ends itself
+    private static volatile int session = 0;
+    // Busy samples per jar, and in total, per side; null keys are the game itself
+    private static final Map<Side, Map<String, Integer>> samples = new HashMap<>();
+    private static final long[] busySamples = new long[Side.values().length];
+    private static Result latest = Result.EMPTY;
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    // Starts sampling; call on the render thread. The class index is built first, in the background.
+    public static void start() {
+        if (running) return;
+        running = true;
+        int current = ++session;
+        Thread renderThread = Thread.currentThread();
+        InventoryScanner.Snapshot inventory = InventoryScanner.latest();
+
+        synchronized (LOCK) {
+            samples.clear();
+            Arrays.fill(busySamples, 0);
+            latest = Result.EMPTY;
+        }
+        CompletableFuture.runAsync(() -> {
+            ModClassIndex index = ModClassIndex.build(inventory);
+            if (!running || session != current) return;
+            Thread sampler = new Thread(() -> sample(renderThread, index, current), "SimpleModManager profiler");
+            sampler.setDaemon(true);
+            sampler.start();
+        }, BackgroundTasks.EXECUTOR);
+    }
+
+    // Stops sampling; the results so far stay available.
+    public static void stop() {
+        running = false;
+    }
+
+    // Shares over everything sampled since the last start; recomputed only when new samples came in.
+    public static Result result() {
+        synchronized (LOCK) {
+            if (latest == null) latest = computeResult();
+            return latest;
+        }
+    }
+
+    private static void sample(Thread renderThread, ModClassIndex index, int current) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        try {
+            while (running && session == current && renderThread.isAlive()) {
+                record(Side.CLIENT, renderThread, index);
+
+                IntegratedServer server = client.getServer();
+                Thread serverThread = server == null ? null : server.getThread();
+                if (serverThread != null) record(Side.SERVER, serverThread, index);
+
+                try {
+                    Thread.sleep(INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        } finally {
+            // Even if a sample failed, the button must not show a profiler that is gone
+            if (session == current) running = false;
+        }
+    }
+
+    private static void record(Side side, Thread thread, ModClassIndex index) {
+        Thread.State state = thread.getState();
+        if (state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING || state == Thread.State.TERMINATED) return;
+
+        StackTraceElement[] stack = thread.getStackTrace();
+        String jar = null;
+        for (StackTraceElement frame : stack) {
+            jar = index.jarOf(frame);
+            if (jar != null) break;
+        }
+
+        synchronized (LOCK) {
+            samples.computeIfAbsent(side, s -> new HashMap<>()).merge(jar, 1, Integer::sum);
+            busySamples[side.ordinal()]++;
+            latest = null; // recomputed when asked for
+        }
+    }
+
+    private static Result computeResult() {
+        return new Result(busySamples[Side.CLIENT.ordinal()], busySamples[Side.SERVER.ordinal()],
+                shares(Side.CLIENT), shares(Side.SERVER));
+    }
+
+    private static Map<String, Double> shares(Side side) {
+        Map<String, Double> shares = new HashMap<>();
+        Map<String, Integer> counts = samples.get(side);
+        long total = busySamples[side.ordinal()];
+        if (counts == null || total == 0) return shares;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getKey() != null) shares.put(entry.getKey(), entry.getValue() * 100.0 / total);
+        }
+        return shares;
+    }
+}
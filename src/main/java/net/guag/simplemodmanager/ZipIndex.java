@@ -0,0 +1,343 @@
+package net.guag.simplemodmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads single entries out of a zip without opening it as a {@link java.util.zip.ZipFile}.
+ * Only the end-of-central-directory record and the central directory are read,
+ * then the local header and data of each entry asked for, so the cost depends
+ * on the number of entries rather than on the size of the pack. Zip64 archives
+ * are supported; encryption and split archives are not.
+ *
+ * Regions are read with positional reads instead of being memory-mapped. This
+ * goes for every mod and pack the manager reads: on Windows a mapped file can't
+ * be moved or deleted until the mapping is garbage collected, which can be long
+ * after the read, and an apply has to move these files. The manager's own
+ * caches are different, see {@link ThumbnailCache}.
+ */
+public class ZipIndex implements AutoCloseable {
+    // Largest entry inflated into memory; pack.mcmeta and pack.png are far below this
+    private static final int MAX_ENTRY_BYTES = 16 * 1024 * 1024;
+    // The EOCD record is 22 bytes plus a comment of up to 64 KiB
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_EOCD_SEARCH = EOCD_SIZE + 0xFFFF;
+    // Compressed bytes read at a time by readHead()
+    private static final int HEAD_INPUT_BYTES = 1024;
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    // Where an entry's local header is and how its data is stored
+    public record Entry(String name, int method, long compressedSize, long size, long localHeaderOffset) {}
+
+    private final FileChannel channel;
+
+    private ZipIndex(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public static ZipIndex open(File file) throws IOException {
+        return new ZipIndex(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    // The entry's bytes, or null if the archive has no such entry.
+    public static byte[] readEntry(File file, String name) throws IOException {
+        try (ZipIndex zip = open(file)) {
+            Entry entry = zip.find(name).get(name);
+            return entry == null ? null : zip.read(entry);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Looks up the named entries in one pass over the central directory; missing names are left out.
+    public Map<String, Entry> find(String... names) throws IOException {
+        byte[][] wanted = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) wanted[i] = names[i].getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer directory = readCentralDirectory(channel);
+        Map<String, Entry> found = new HashMap<>();
+        while (directory.remaining() >= 46 && found.size() < names.length) {
+            int start = directory.position();
+            if (directory.getInt(start) != CENTRAL_SIGNATURE) throw new IOException("Corrupt central directory");
+            int method = directory.getShort(start + 10) & 0xFFFF;
+            long compressedSize = directory.getInt(start + 20) & 0xFFFFFFFFL;
+            long size = directory.getInt(start + 24) & 0xFFFFFFFFL;
+            int nameLength = directory.getShort(start + 28) & 0xFFFF;
+            int extraLength = directory.getShort(start + 30) & 0xFFFF;
+            int commentLength = directory.getShort(start + 32) & 0xFFFF;
+            long offset = directory.getInt(start + 42) & 0xFFFFFFFFL;
+            int nameStart = start + 46;
+            int next = nameStart + nameLength + extraLength + commentLength;
+            if (next > directory.limit()) throw new IOException("Corrupt central directory");
+
+            // Names are compared as bytes, so entries nobody asked for are never decoded
+            int match = matchName(directory, nameStart, nameLength, wanted);
+            if (match >= 0 && !found.containsKey(names[match])) {
+                if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+                    long[] zip64 = readZip64Extra(directory, nameStart + nameLength, extraLength, size, compressedSize, offset);
+                    size = zip64[0];
+                    compressedSize = zip64[1];
+                    offset = zip64[2];
+                }
+                found.put(names[match], new Entry(names[match], method, compressedSize, size, offset));
+            }
+            directory.position(next);
+        }
+        return found;
+    }
+
+    // Every entry whose name starts with prefix and ends with suffix, in central directory order.
+    public List<Entry> list(String prefix, String suffix) throws IOException {
+        byte[] head = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] tail = suffix.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer directory = readCentralDirectory(channel);
+        List<Entry> result = new ArrayList<>();
+        while (directory.remaining() >= 46) {
+            int start = directory.position();
+            if (directory.getInt(start) != CENTRAL_SIGNATURE) throw new IOException("Corrupt central directory");
+            int nameLength = directory.getShort(start + 28) & 0xFFFF;
+            int extraLength = directory.getShort(start + 30) & 0xFFFF;
+            int commentLength = directory.getShort(start + 32) & 0xFFFF;
+            int nameStart = start + 46;
+            int next = nameStart + nameLength + extraLength + commentLength;
+            if (next > directory.limit()) throw new IOException("Corrupt central directory");
+
+            if (nameLength >= head.length + tail.length
+                    && regionEquals(directory, nameStart, head)
+                    && regionEquals(directory, nameStart + nameLength - tail.length, tail)) {
+                int method = directory.getShort(start + 10) & 0xFFFF;
+                long compressedSize = directory.getInt(start + 20) & 0xFFFFFFFFL;
+                long size = directory.getInt(start + 24) & 0xFFFFFFFFL;
+                long offset = directory.getInt(start + 42) & 0xFFFFFFFFL;
+                if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+                    long[] zip64 = readZip64Extra(directory, nameStart + nameLength, extraLength, size, compressedSize, offset);
+                    size = zip64[0];
+                    compressedSize = zip64[1];
+                    offset = zip64[2];
+                }
+                byte[] name = new byte[nameLength];
+                directory.get(nameStart, name);
+                result.add(new Entry(new String(name, StandardCharsets.UTF_8), method, compressedSize, size, offset));
+            }
+            directory.position(next);
+        }
+        return result;
+    }
+
+    // SHA-256 of the central directory, which holds the name, size and CRC of every entry: it changes
+    // whenever any entry's content does, without reading the entries themselves.
+    public String directoryFingerprint() throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(readCentralDirectory(channel));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static boolean regionEquals(ByteBuffer buffer, int start, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(start + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    private static int matchName(ByteBuffer directory, int start, int length, byte[][] wanted) {
+        outer:
+        for (int i = 0; i < wanted.length; i++) {
+            byte[] name = wanted[i];
+            if (name.length != length) continue;
+            for (int j = 0; j < length; j++) {
+                if (directory.get(start + j) != name[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // Finds the (zip64) end of central directory record and reads the whole central directory.
+    private static ByteBuffer readCentralDirectory(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < EOCD_SIZE) throw new IOException("Not a zip file");
+
+        int tailSize = (int) Math.min(fileSize, MAX_EOCD_SEARCH);
+        long tailStart = fileSize - tailSize;
+        ByteBuffer tail = readFully(channel, tailStart, tailSize);
+
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) throw new IOException("No end of central directory");
+
+        long directorySize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+
+        if (directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            // The zip64 locator sits right before the EOCD and points at the zip64 record
+            long locator = tailStart + eocd - 20;
+            if (locator < 0) throw new IOException("Missing zip64 locator");
+            ByteBuffer locatorRecord = readFully(channel, locator, 20);
+            if (locatorRecord.getInt(0) != ZIP64_LOCATOR_SIGNATURE) throw new IOException("Missing zip64 locator");
+            ByteBuffer zip64 = readFully(channel, locatorRecord.getLong(8), 56);
+            if (zip64.getInt(0) != ZIP64_EOCD_SIGNATURE) throw new IOException("Corrupt zip64 end of central directory");
+            directorySize = zip64.getLong(40);
+            directoryOffset = zip64.getLong(48);
+        }
+
+        if (directorySize > Integer.MAX_VALUE || directoryOffset + directorySize > fileSize) {
+            throw new IOException("Corrupt central directory");
+        }
+        return readFully(channel, directoryOffset, (int) directorySize);
+    }
+
+    // Sizes and offset from the zip64 extra field, for the values the fixed header marks as 0xFFFFFFFF.
+    private static long[] readZip64Extra(ByteBuffer directory, int start, int length, long size, long compressedSize, long offset) throws IOException {
+        int end = start + length;
+        while (start + 4 <= end) {
+            int id = directory.getShort(start) & 0xFFFF;
+            int dataLength = directory.getShort(start + 2) & 0xFFFF;
+            int data = start + 4;
+            if (id == 0x0001) {
+                // Only the fields that overflowed are present, in this order
+                if (size == 0xFFFFFFFFL) { size = directory.getLong(data); data += 8; }
+                if (compressedSize == 0xFFFFFFFFL) { compressedSize = directory.getLong(data); data += 8; }
+                if (offset == 0xFFFFFFFFL) { offset = directory.getLong(data); }
+                return new long[]{size, compressedSize, offset};
+            }
+            start = data + dataLength;
+        }
+        throw new IOException("Missing zip64 extra field");
+    }
+
+    // Inflates one entry found by find().
+    public byte[] read(Entry entry) throws IOException {
+        if (entry.size() > MAX_ENTRY_BYTES || entry.compressedSize() > MAX_ENTRY_BYTES) {
+            throw new IOException(entry.name() + " is too large");
+        }
+        ByteBuffer local = readFully(channel, entry.localHeaderOffset(), 30);
+        if (local.getInt(0) != LOCAL_SIGNATURE) throw new IOException("Corrupt local header for " + entry.name());
+        // The local name and extra field can differ in length from the central directory's
+        long dataStart = entry.localHeaderOffset() + 30 + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+        ByteBuffer data = readFully(channel, dataStart, (int) entry.compressedSize());
+
+        switch (entry.method()) {
+            case 0: {
+                byte[] stored = new byte[data.remaining()];
+                data.get(stored);
+                return stored;
+            }
+            case 8: {
+                Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(data);
+                    byte[] result = new byte[(int) entry.size()];
+                    int filled = 0;
+                    while (filled < result.length && !inflater.finished()) {
+                        int count = inflater.inflate(result, filled, result.length - filled);
+                        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                        filled += count;
+                    }
+                    if (filled != result.length) throw new IOException("Truncated entry " + entry.name());
+                    return result;
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt entry " + entry.name(), e);
+                } finally {
+                    inflater.end();
+                }
+            }
+            default:
+                throw new IOException("Unsupported compression method " + entry.method() + " for " + entry.name());
+        }
+    }
+
+    // The first length bytes of an entry (fewer if it is shorter), inflating only as much as that takes.
+    // Reads the local header and the start of the data in one go; safe to call from several threads.
+    public byte[] readHead(Entry entry, int length) throws IOException {
+        int wanted = (int) Math.min(length, entry.size());
+        // Deflate needs a little more input than output; the block header alone can take a few hundred bytes
+        int guess = 30 + entry.name().length() * 3 + 64 + (entry.method() == 0 ? wanted : HEAD_INPUT_BYTES);
+        int chunk = (int) Math.min(guess, channel.size() - entry.localHeaderOffset());
+        ByteBuffer local = readFully(channel, entry.localHeaderOffset(), chunk);
+        if (chunk < 30 || local.getInt(0) != LOCAL_SIGNATURE) throw new IOException("Corrupt local header for " + entry.name());
+        long dataStart = entry.localHeaderOffset() + 30 + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+
+        byte[] result = new byte[wanted];
+        if (entry.method() == 0) {
+            ByteBuffer data = dataStart + wanted <= entry.localHeaderOffset() + chunk
+                    ? local.position((int) (dataStart - entry.localHeaderOffset())).limit((int) (dataStart - entry.localHeaderOffset()) + wanted)
+                    : readFully(channel, dataStart, wanted);
+            data.get(result);
+            return result;
+        }
+        if (entry.method() != 8) throw new IOException("Unsupported compression method " + entry.method() + " for " + entry.name());
+
+        Inflater inflater = new Inflater(true);
+        try {
+            long inputEnd = dataStart + entry.compressedSize();
+            long position = dataStart;
+            ByteBuffer input = null;
+            int relative = (int) (dataStart - entry.localHeaderOffset());
+            if (relative < chunk) {
+                input = local.position(relative).limit((int) Math.min(chunk, relative + entry.compressedSize()));
+                position += input.remaining();
+            }
+
+            int filled = 0;
+            while (filled < wanted) {
+                if (input == null || !input.hasRemaining()) {
+                    if (position >= inputEnd) break;
+                    int next = (int) Math.min(HEAD_INPUT_BYTES, inputEnd - position);
+                    input = readFully(channel, position, next);
+                    position += next;
+                }
+                inflater.setInput(input);
+                int count = inflater.inflate(result, filled, wanted - filled);
+                filled += count;
+                if (inflater.finished()) break;
+                if (count == 0 && !inflater.needsInput()) throw new IOException("Corrupt entry " + entry.name());
+            }
+            return filled == wanted ? result : Arrays.copyOf(result, filled);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt entry " + entry.name(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of zip");
+        }
+        return buffer.flip();
+    }
+}